@@ -0,0 +1,190 @@
+/*
+ * Processing Audio Visualization (PAV)
+ * Copyright (C) 2011  Christopher Pramerdorfer
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pav.lib;
+
+import pav.lib.frame.Frame;
+
+/**
+ * Maps the bands of a spectrum to the columns of a drawing area.
+ *
+ * The band range follows from cutoff frequencies, the columns from the width of the area. If
+ * there are more bands than pixels, every column covers a range of bands and shows their
+ * maximum, otherwise there is a column per band. All tables are recalculated only if the
+ * layout changes, that is the number of bands, the sample rate, the cutoffs or the area.
+ *
+ * @author christopher
+ */
+public class BandLayout
+{
+	private int _numBands, _multiResolution, _minFrequency, _maxFrequency;
+	private float _sampleRate, _x1, _x2;
+	private int _from, _to, _numColumns;
+	private boolean _columnsValid;
+	private int[] _starts, _ends;
+	private float[] _xs, _values;
+	
+	/**
+	 * Ctor.
+	 */
+	public BandLayout()
+	{
+		_numBands = -1;
+	}
+	
+	/**
+	 * Sets the band range of Frame.Transform.spectrum() or multiResolution() to use.
+	 *
+	 * @param numBands The number of bands of the spectrum. Must be > 0
+	 * @param multiResolution The number of bands if the multi resolution spectrum is used, 0 otherwise
+	 * @param minFrequency The lower cutoff frequency or null if all bands are used
+	 * @param maxFrequency The upper cutoff frequency or null if all bands are used
+	 */
+	public void setRange(int numBands, int multiResolution, Integer minFrequency, Integer maxFrequency)
+	{
+		int min = (minFrequency == null || maxFrequency == null) ? -1 : minFrequency;
+		int max = (minFrequency == null || maxFrequency == null) ? -1 : maxFrequency;
+		float sampleRate = Frame.getSampleRate();
+		
+		if(numBands == _numBands && multiResolution == _multiResolution && min == _minFrequency
+				&& max == _maxFrequency && sampleRate == _sampleRate) {
+			return;
+		}
+		
+		_numBands = numBands;
+		_multiResolution = multiResolution;
+		_minFrequency = min;
+		_maxFrequency = max;
+		_sampleRate = sampleRate;
+		
+		if(min < 0) {
+			_from = 0;
+			_to = numBands - 1;
+		}
+		else if(multiResolution > 0) {
+			_from = Frame.Transform.Util.frequencyToMultiResolutionBand(min, multiResolution);
+			_to = Frame.Transform.Util.frequencyToMultiResolutionBand(max, multiResolution);
+		}
+		else {
+			_from = Frame.Transform.Util.frequencyToBand(min);
+			_to = Frame.Transform.Util.frequencyToBand(max);
+		}
+		
+		_columnsValid = false;
+	}
+	
+	/**
+	 * Sets the horizontal extent of the drawing area.
+	 *
+	 * @param x1 The low x-coordinate
+	 * @param x2 The high x-coordinate. Must be >= x1
+	 */
+	public void setArea(float x1, float x2)
+	{
+		if(_columnsValid && x1 == _x1 && x2 == _x2) {
+			return;
+		}
+		
+		_x1 = x1;
+		_x2 = x2;
+		
+		int numBands = (_to - _from) + 1;
+		int width = Math.max(1, (int) Math.floor(x2 - x1));
+		int num = Math.max(0, Math.min(numBands, width));
+		
+		_numColumns = num;
+		_starts = new int[num];
+		_ends = new int[num];
+		_xs = new float[num];
+		_values = new float[num];
+		
+		for(int c = 0; c < num; c++) {
+			_starts[c] = _from + (int) ((long) c * numBands / num);
+			_ends[c] = _from + (int) ((long) (c + 1) * numBands / num) - 1;
+			_xs[c] = (num == 1) ? x1 : x1 + (x2 - x1) * c / (num - 1);
+		}
+		
+		_columnsValid = true;
+	}
+	
+	/**
+	 * Calculates the values of the columns. Requires setRange() and setArea().
+	 *
+	 * @param bands The spectrum. Must have the number of bands given to setRange()
+	 * @return The column values, the maximum of the bands of every column. Reused by the next call
+	 */
+	public float[] columns(float[] bands)
+	{
+		float[] values = _values;
+		int[] starts = _starts;
+		int[] ends = _ends;
+		
+		for(int c = 0; c < _numColumns; c++) {
+			int end = ends[c];
+			float v = bands[starts[c]];
+			
+			for(int i = starts[c] + 1; i <= end; i++) {
+				if(bands[i] > v) v = bands[i];
+			}
+			
+			values[c] = v;
+		}
+		
+		return values;
+	}
+	
+	/**
+	 * Returns the index of the first band to use.
+	 *
+	 * @return The band index
+	 */
+	public int from()
+	{
+		return _from;
+	}
+	
+	/**
+	 * Returns the index of the last band to use.
+	 *
+	 * @return The band index
+	 */
+	public int to()
+	{
+		return _to;
+	}
+	
+	/**
+	 * Returns the number of columns. Requires setArea().
+	 *
+	 * @return The number of columns
+	 */
+	public int numColumns()
+	{
+		return _numColumns;
+	}
+	
+	/**
+	 * Returns the x-coordinates of the columns. Requires setArea(). Must not be modified.
+	 *
+	 * @return The x-coordinates
+	 */
+	public float[] xs()
+	{
+		return _xs;
+	}
+}
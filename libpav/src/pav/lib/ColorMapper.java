@@ -25,15 +25,26 @@ import processing.core.PApplet;
 /**
  * Maps values to colors.
  * 
+ * Colors are looked up in a precomputed table that is rebuilt whenever the colors or the
+ * color mode change, so mapping a value is a clamp, scale and index operation.
+ * 
  * @author christopher
  */
 public class ColorMapper implements Serializable
 {
+	/**
+	 * The number of entries of the color lookup table.
+	 */
+	public static final int LUT_SIZE = 2048;
+	
 	private static final long serialVersionUID = -2737277542090976648L;
 	
 	private ColorMapperImpl _mapper;
 	private int _mode;
 	private float _vMin, _vMax;
+	
+	private transient int[] _lut;
+	private transient float _lutMin, _lutScale;
 		
 	/**
 	 * Sets the static color to use.
@@ -46,6 +57,7 @@ public class ColorMapper implements Serializable
 		c.setColor(color);
 		
 		_mapper = c;
+		_lut = null;
 	}
 	
 	/**
@@ -62,6 +74,7 @@ public class ColorMapper implements Serializable
 		
 		_mode = mode;
 		_mapper = c;
+		_lut = null;
 	}
 	
 	/**
@@ -78,6 +91,7 @@ public class ColorMapper implements Serializable
 		
 		_mode = mode;
 		_mapper = c;
+		_lut = null;
 	}
 	
 	/**
@@ -90,6 +104,10 @@ public class ColorMapper implements Serializable
 	{
 		_vMin = min;
 		_vMax = max;
+		
+		if(_lut != null) {
+			_updateScale();
+		}
 	}
 	
 	/**
@@ -100,7 +118,80 @@ public class ColorMapper implements Serializable
 	 */
 	public int map(float value)
 	{
-		return _mapper.map(value);
+		if(_lut == null) {
+			_updateLut();
+		}
+		
+		int i = (int) ((value - _lutMin) * _lutScale + 0.5f);
+		
+		if(i < 0) return _lut[0];
+		if(i >= LUT_SIZE) return _lut[LUT_SIZE - 1];
+		
+		return _lut[i];
+	}
+	
+	/**
+	 * Maps a number of values to colors.
+	 * 
+	 * @param values The values. Must not be null
+	 * @param out Where to write the colors to. Must not be null and at least as long as values
+	 */
+	public void mapInto(float[] values, int[] out)
+	{
+		mapInto(values, 0, values.length, out, 0);
+	}
+	
+	/**
+	 * Maps a range of values to colors.
+	 * 
+	 * @param values The values. Must not be null
+	 * @param from The index of the first value to map
+	 * @param length The number of values to map
+	 * @param out Where to write the colors to. Must not be null
+	 * @param offset The index in out to write the first color to
+	 */
+	public void mapInto(float[] values, int from, int length, int[] out, int offset)
+	{
+		if(_lut == null) {
+			_updateLut();
+		}
+		
+		int[] lut = _lut;
+		int max = LUT_SIZE - 1;
+		float min = _lutMin;
+		float scale = _lutScale;
+		int to = from + length;
+		
+		for(int i = from, j = offset; i < to; i++, j++) {
+			int k = (int) ((values[i] - min) * scale + 0.5f);
+			
+			if(k < 0) k = 0;
+			else if(k > max) k = max;
+			
+			out[j] = lut[k];
+		}
+	}
+	
+	private void _updateLut()
+	{
+		int[] lut = new int[LUT_SIZE];
+		float max = LUT_SIZE - 1;
+		
+		for(int i = 0; i < LUT_SIZE; i++) {
+			lut[i] = _mapper.color(i / max);
+		}
+		
+		_lut = lut;
+		_updateScale();
+	}
+	
+	private void _updateScale()
+	{
+		float min = _mapper.rangeMin();
+		float range = _vMax - min;
+		
+		_lutMin = min;
+		_lutScale = (range > 0) ? (LUT_SIZE - 1) / range : 0;
 	}
 	
 	/**
@@ -113,12 +204,23 @@ public class ColorMapper implements Serializable
 		private static final long serialVersionUID = -1018124658424277468L;
 
 		/**
-		 * Maps a value to a color.
+		 * Calculates the color at a given position of the color range.
 		 * 
-		 * @param value The value
+		 * @param f The relative position in the range. Between 0 and 1
 		 * @return The color
 		 */
-		public abstract int map(float value);
+		public abstract int color(float f);
+		
+		/**
+		 * Returns the value that maps to the start of the color range.
+		 * The end of the range is always the maximum value.
+		 * 
+		 * @return The start of the color range
+		 */
+		public float rangeMin()
+		{
+			return _vMin;
+		}
 	}
 	
 	/**
@@ -142,14 +244,8 @@ public class ColorMapper implements Serializable
 			_color = color;
 		}
 		
-		/**
-		 * Maps a value to a color.
-		 * 
-		 * @param value The value
-		 * @return The color
-		 */
 		@Override
-		public int map(float value)
+		public int color(float f)
 		{
 			return _color;
 		}
@@ -178,17 +274,9 @@ public class ColorMapper implements Serializable
 			_b = b;
 		}
 
-		/**
-		 * Maps a value to a color.
-		 * 
-		 * @param value The value
-		 * @return The color
-		 */
 		@Override
-		public int map(float value)
+		public int color(float f)
 		{
-			float f = PApplet.map(value, _vMin, _vMax, 0, 1);
-			
 			return PApplet.lerpColor(_a, _b, f, _mode);
 		}
 	}
@@ -196,6 +284,8 @@ public class ColorMapper implements Serializable
 	/**
 	 * Interpolates between an arbitrary number of colors.
 	 * 
+	 * The thresholds are relative to the maximum value, the minimum value is ignored.
+	 * 
 	 * @author christopher
 	 */
 	private class Colors extends ColorMapperImpl
@@ -217,14 +307,8 @@ public class ColorMapper implements Serializable
 			_colors = colors;
 		}
 
-		/**
-		 * Maps a value to a color.
-		 * 
-		 * @param value The value
-		 * @return The color
-		 */
 		@Override
-		public int map(float value)
+		public int color(float f)
 		{
 			int cA = 0, cB = 0, l = _thresholds.length - 1;
 			float tA = 0, tB = 0;
@@ -232,17 +316,21 @@ public class ColorMapper implements Serializable
 			for(int i = 0; i < l; i++) {
 				cA = _colors[i];
 				cB = _colors[i + 1];
-				tA = _vMax * _thresholds[i];
-				tB = _vMax * _thresholds[i + 1];
+				tA = _thresholds[i];
+				tB = _thresholds[i + 1];
 				
-				if(value < tB) {
+				if(f < tB) {
 					break;
 				}
 			}
 			
-			float f = PApplet.map(value, tA, tB, 0, 1);
-			
-			return PApplet.lerpColor(cA, cB, f, _mode);
+			return PApplet.lerpColor(cA, cB, PApplet.map(f, tA, tB, 0, 1), _mode);
+		}
+		
+		@Override
+		public float rangeMin()
+		{
+			return 0;
 		}
 	}
 }
@@ -0,0 +1,301 @@
+/*
+ * Processing Audio Visualization (PAV)
+ * Copyright (C) 2011  Christopher Pramerdorfer
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pav.lib;
+
+import processing.core.PApplet;
+import processing.core.PGraphics;
+import codeanticode.glgraphics.GLConstants;
+import codeanticode.glgraphics.GLGraphics;
+import codeanticode.glgraphics.GLGraphicsOffScreen;
+import codeanticode.glgraphics.GLModel;
+
+/**
+ * A batch of colored 2D vertices that is submitted to the renderer at once.
+ *
+ * Visualizers fill the packed vertex and color arrays directly and call draw() once
+ * per frame. Under GLGraphics the vertices are uploaded to a vertex buffer object and
+ * drawn with a single call, otherwise they are sent in one tight beginShape() / endShape() block.
+ *
+ * @author christopher
+ */
+public class GeometryBatch
+{
+	/**
+	 * Draw every vertex as a point.
+	 */
+	public static final int POINTS = 1;
+
+	/**
+	 * Draw a line between every pair of vertices.
+	 */
+	public static final int LINES = 2;
+
+	/**
+	 * Connect all vertices with lines.
+	 */
+	public static final int LINE_STRIP = 3;
+
+	/**
+	 * Connect all vertices with lines and close the shape.
+	 */
+	public static final int LINE_LOOP = 4;
+
+	private final PApplet _p;
+	private int _mode, _size;
+	private float _strokeWeight;
+	private float[] _vertices;
+	private int[] _colors;
+
+	private GLModel _model;
+	private int _modelMode, _modelCapacity;
+	private float[] _modelVertices, _modelColors;
+
+	/**
+	 * Ctor.
+	 *
+	 * @param p The PApplet the batch will be drawn to. Must not be null
+	 */
+	public GeometryBatch(PApplet p)
+	{
+		_p = p;
+		_vertices = new float[0];
+		_colors = new int[0];
+		_strokeWeight = 1;
+		_mode = LINE_STRIP;
+	}
+
+	/**
+	 * Prepares the batch for a new frame. The vertex and color arrays are grown if required,
+	 * their content is undefined afterwards.
+	 *
+	 * @param mode The draw mode. Must be a valid mode according to the constants of this class
+	 * @param size The number of vertices. Must be >= 0
+	 */
+	public void begin(int mode, int size)
+	{
+		_mode = mode;
+		_size = size;
+
+		if(_colors.length < size) {
+			_vertices = new float[size * 2];
+			_colors = new int[size];
+		}
+	}
+
+	/**
+	 * Returns the packed vertex coordinates (x0, y0, x1, y1, ...). May be longer than
+	 * required, only the first 2 * size() values are drawn.
+	 *
+	 * @return The vertex array
+	 */
+	public float[] vertices()
+	{
+		return _vertices;
+	}
+
+	/**
+	 * Returns the vertex colors. May be longer than required, only the first size() values are drawn.
+	 *
+	 * @return The color array
+	 */
+	public int[] colors()
+	{
+		return _colors;
+	}
+
+	/**
+	 * Returns the number of vertices of the current frame.
+	 *
+	 * @return The number of vertices
+	 */
+	public int size()
+	{
+		return _size;
+	}
+
+	/**
+	 * Sets the stroke weight to use.
+	 *
+	 * @param weight The stroke weight. Must be > 0
+	 */
+	public void setStrokeWeight(float weight)
+	{
+		_strokeWeight = weight;
+	}
+
+	/**
+	 * Draws the batch to the PApplet this batch was created for.
+	 */
+	public void draw()
+	{
+		draw(_p.g);
+	}
+
+	/**
+	 * Draws the batch. If target is an offscreen buffer, drawing must be enabled.
+	 *
+	 * @param target Where to draw to. Must not be null
+	 */
+	public void draw(PGraphics target)
+	{
+		if(_size == 0) {
+			return;
+		}
+
+		if(target instanceof GLGraphics) {
+			_updateModel();
+			((GLGraphics) target).model(_model, 0, _size - 1);
+		}
+		else if(target instanceof GLGraphicsOffScreen) {
+			_updateModel();
+			((GLGraphicsOffScreen) target).model(_model, 0, _size - 1);
+		}
+		else {
+			_drawShape(target, false);
+		}
+	}
+
+	/**
+	 * Draws the batch as a curve through all vertices, regardless of the mode. Curves
+	 * are always drawn using Processings shape functions.
+	 *
+	 * @param target Where to draw to. Must not be null
+	 */
+	public void drawCurve(PGraphics target)
+	{
+		if(_size == 0) {
+			return;
+		}
+
+		_drawShape(target, true);
+	}
+
+	/**
+	 * Disposes this batch, releasing all GPU resources.
+	 */
+	public void dispose()
+	{
+		if(_model != null) {
+			_model.delete();
+			_model = null;
+		}
+	}
+
+	private void _drawShape(PGraphics target, boolean curve)
+	{
+		float[] v = _vertices;
+		int[] c = _colors;
+		int len = _size;
+		int color = c[0];
+
+		target.strokeWeight(_strokeWeight);
+		target.stroke(color);
+
+		switch(_mode) {
+			case POINTS :
+				target.beginShape(PApplet.POINTS);
+				break;
+			case LINES :
+				target.beginShape(PApplet.LINES);
+				break;
+			default :
+				target.noFill();
+				target.beginShape();
+				break;
+		}
+
+		for(int i = 0, j = 0; i < len; i++, j += 2) {
+			if(c[i] != color) {
+				color = c[i];
+				target.stroke(color);
+			}
+
+			if(curve) {
+				target.curveVertex(v[j], v[j + 1]);
+			}
+			else {
+				target.vertex(v[j], v[j + 1]);
+			}
+		}
+
+		if(_mode == LINE_LOOP && ! curve) {
+			target.endShape(PApplet.CLOSE);
+		}
+		else {
+			target.endShape();
+		}
+	}
+
+	private void _updateModel()
+	{
+		int mode = _glMode();
+
+		if(_model == null || _modelMode != mode || _modelCapacity < _size) {
+			dispose();
+
+			_modelMode = mode;
+			_modelCapacity = _colors.length;
+			_modelVertices = new float[_modelCapacity * 4];
+			_modelColors = new float[_modelCapacity * 4];
+
+			_model = new GLModel(_p, _modelCapacity, mode, GLModel.STREAM);
+			_model.initColors();
+		}
+
+		float[] v = _vertices;
+		int[] c = _colors;
+		float[] mv = _modelVertices;
+		float[] mc = _modelColors;
+		int len = _size;
+		float n = 1 / 255f;
+
+		for(int i = 0, j = 0, k = 0; i < len; i++, j += 2, k += 4) {
+			int color = c[i];
+
+			mv[k] = v[j];
+			mv[k + 1] = v[j + 1];
+			mv[k + 2] = 0;
+			mv[k + 3] = 1;
+
+			mc[k] = ((color >> 16) & 0xFF) * n;
+			mc[k + 1] = ((color >> 8) & 0xFF) * n;
+			mc[k + 2] = (color & 0xFF) * n;
+			mc[k + 3] = ((color >>> 24) & 0xFF) * n;
+		}
+
+		_model.updateVertices(mv);
+		_model.updateColors(mc);
+		_model.setLineWidth(_strokeWeight);
+		_model.setPointSize(_strokeWeight);
+	}
+
+	private int _glMode()
+	{
+		switch(_mode) {
+			case POINTS :
+				return PApplet.POINTS;
+			case LINES :
+				return PApplet.LINES;
+			case LINE_LOOP :
+				return GLConstants.LINE_LOOP;
+			default :
+				return GLConstants.LINE_STRIP;
+		}
+	}
+}
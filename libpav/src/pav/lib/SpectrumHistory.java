@@ -0,0 +1,224 @@
+/*
+ * Processing Audio Visualization (PAV)
+ * Copyright (C) 2011  Christopher Pramerdorfer
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pav.lib;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Stores the history of a spectrum outside of the Java heap.
+ *
+ * Band intensities are quantized to a single byte and written into a direct ByteBuffer
+ * that is bounded by a byte budget. Besides the full resolution history (level 0) a number
+ * of downsampled levels is maintained, every column of level n + 1 is the maximum of two
+ * consecutive columns of level n. All levels have the same number of columns, so level n
+ * covers 2^n times the duration of level 0.
+ *
+ * @author christopher
+ */
+public class SpectrumHistory
+{
+	private final ByteBuffer _store;
+	private final int _numBands, _numLevels, _capacity;
+	private final float _ceiling, _quantize, _dequantize;
+
+	private final int[] _head, _count, _pendingCount;
+	private final byte[][] _pending;
+	private final boolean[] _updated;
+	private final byte[] _column;
+
+	/**
+	 * Ctor.
+	 *
+	 * @param numBands The number of bands per column. Must be > 0
+	 * @param budget The maximum number of bytes to allocate. Must be >= numBands. If there is not enough
+	 * budget for one column per level, fewer levels are kept, see numLevels()
+	 * @param numLevels The number of zoom levels, including the full resolution level. Must be > 0
+	 * @param ceiling The highest intensity that can be stored. Larger values are clipped. Must be > 0
+	 */
+	public SpectrumHistory(int numBands, int budget, int numLevels, float ceiling)
+	{
+		_numBands = numBands;
+		// at least one column per level, levels that do not fit into the budget are dropped
+		_numLevels = Math.max(1, Math.min(numLevels, budget / numBands));
+		_capacity = Math.max(1, budget / (numBands * _numLevels));
+		_ceiling = ceiling;
+		_quantize = 255 / ceiling;
+		_dequantize = ceiling / 255;
+
+		_store = ByteBuffer.allocateDirect(_capacity * numBands * _numLevels);
+
+		_head = new int[_numLevels];
+		_count = new int[_numLevels];
+		_pendingCount = new int[_numLevels];
+		_pending = new byte[_numLevels][numBands];
+		_updated = new boolean[_numLevels];
+		_column = new byte[numBands];
+	}
+
+	/**
+	 * Adds a new column to the history.
+	 *
+	 * @param bands The band intensities. Must have numBands() values
+	 */
+	public void add(float[] bands)
+	{
+		byte[] column = _column;
+
+		for(int i = 0; i < _numBands; i++) {
+			float v = bands[i];
+
+			if(v <= 0) column[i] = 0;
+			else if(v >= _ceiling) column[i] = (byte) 255;
+			else column[i] = (byte) (v * _quantize + 0.5f);
+		}
+
+		for(int level = 0; level < _numLevels; level++) {
+			_updated[level] = false;
+		}
+
+		_write(0, column);
+	}
+
+	/**
+	 * Whether the last call to add() completed a new column on the given level.
+	 *
+	 * @param level The level. Must be >= 0 and < numLevels()
+	 * @return Whether the level was updated
+	 */
+	public boolean updated(int level)
+	{
+		return _updated[level];
+	}
+
+	/**
+	 * Returns the number of columns stored on a given level.
+	 *
+	 * @param level The level. Must be >= 0 and < numLevels()
+	 * @return The number of columns
+	 */
+	public int numColumns(int level)
+	{
+		return _count[level];
+	}
+
+	/**
+	 * Reads a column.
+	 *
+	 * @param level The level. Must be >= 0 and < numLevels()
+	 * @param age The age of the column, 0 is the newest one. Must be < numColumns(level)
+	 * @param out Where to write the band intensities to. Must have at least numBands() values
+	 */
+	public void get(int level, int age, float[] out)
+	{
+		int slot = _head[level] - 1 - age;
+
+		if(slot < 0) {
+			slot += _capacity;
+		}
+
+		int offset = (level * _capacity + slot) * _numBands;
+
+		for(int i = 0; i < _numBands; i++) {
+			out[i] = (_store.get(offset + i) & 0xFF) * _dequantize;
+		}
+	}
+
+	/**
+	 * Returns the number of bands per column.
+	 *
+	 * @return The number of bands
+	 */
+	public int numBands()
+	{
+		return _numBands;
+	}
+
+	/**
+	 * Returns the number of zoom levels.
+	 *
+	 * @return The number of levels
+	 */
+	public int numLevels()
+	{
+		return _numLevels;
+	}
+
+	/**
+	 * Returns the number of columns every level can hold.
+	 *
+	 * @return The capacity
+	 */
+	public int capacity()
+	{
+		return _capacity;
+	}
+
+	/**
+	 * Removes all columns.
+	 */
+	public void clear()
+	{
+		for(int level = 0; level < _numLevels; level++) {
+			_head[level] = 0;
+			_count[level] = 0;
+			_pendingCount[level] = 0;
+			_updated[level] = false;
+		}
+	}
+
+	private void _write(int level, byte[] column)
+	{
+		int offset = (level * _capacity + _head[level]) * _numBands;
+
+		for(int i = 0; i < _numBands; i++) {
+			_store.put(offset + i, column[i]);
+		}
+
+		_head[level] = (_head[level] + 1) % _capacity;
+
+		if(_count[level] < _capacity) {
+			_count[level]++;
+		}
+
+		_updated[level] = true;
+
+		int next = level + 1;
+
+		if(next == _numLevels) {
+			return;
+		}
+
+		byte[] pending = _pending[next];
+
+		if(_pendingCount[next] == 0) {
+			System.arraycopy(column, 0, pending, 0, _numBands);
+			_pendingCount[next] = 1;
+		}
+		else {
+			for(int i = 0; i < _numBands; i++) {
+				if((column[i] & 0xFF) > (pending[i] & 0xFF)) {
+					pending[i] = column[i];
+				}
+			}
+
+			_pendingCount[next] = 0;
+			_write(next, pending);
+		}
+	}
+}
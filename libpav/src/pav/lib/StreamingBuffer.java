@@ -19,6 +19,7 @@
 
 package pav.lib;
 
+import java.util.Arrays;
 import processing.core.PApplet;
 import processing.core.PImage;
 import processing.opengl.PGraphicsOpenGL;
@@ -30,10 +31,8 @@ import codeanticode.glgraphics.GLTexture;
  * A streaming image buffer, useful in some visualizations such as spectogram.
  * 
  * This Uses GLGraphics if available. The Processing version supports alpha channel
- * transparency but is rather slow. The GLGraphics version is optimized for speed.
- * It does not support transparency. Also, the GLGraphics implementation currently ignores
- * the width argument of the draw method for implementation reasons. This does however
- * not affect the result if the buffer is drawn to occupy the full area of the host PApplet.
+ * transparency. The GLGraphics version is optimized for speed.
+ * It does not support transparency.
  * 
  * @author christopher
  */
@@ -106,12 +105,20 @@ public class StreamingBuffer
 		_impl.add(data, startOnTop);
 	}
 	
+	/**
+	 * Removes all data samples from the buffer.
+	 */
+	public void clear()
+	{
+		_impl.clear();
+	}
+	
 	/**
 	 * Draws this buffer to a given area of the host PApplet.
 	 * 
 	 * @param xStart The first x-coordinate of the display area
 	 * @param yStart The first y-coordinate of the display area
-	 * @param width The width of the display area. Must be > 0. Ignored under GLGraphics
+	 * @param width The width of the display area. Must be > 0
 	 * @param height The height of the display area. Must be > 0
 	 */
 	public void draw(int xStart, int yStart, int width, int height)
@@ -144,6 +151,11 @@ public class StreamingBuffer
 		 */
 		public abstract void add(int[] data, boolean startOnTop);
 		
+		/**
+		 * Removes all data samples from the buffer.
+		 */
+		public abstract void clear();
+		
 		/**
 		 * Draws this buffer to a given area of the host PApplet.
 		 * 
@@ -165,15 +177,17 @@ public class StreamingBuffer
 	/**
 	 * Buffer implementation using a single PImage object.
 	 * 
-	 * This implementation uses only a single PImage object and
-	 * supports alpha channel transparency. It is however rather slow.
+	 * This implementation supports alpha channel transparency. New columns are written
+	 * to a pixel ring only, the scrolled image is composed lazily with array copies
+	 * the next time the buffer is drawn and only if columns were added since.
 	 * 
 	 * @author christopher
 	 */
 	private class StreamingBufferPImage extends StreamingBufferImpl
 	{
 		private int _counter, _x;
-		private boolean _switch;
+		private boolean _dirty;
+		private final int[] _ring;
 		private final PImage _buffer;
 		
 		/**
@@ -181,6 +195,7 @@ public class StreamingBuffer
 		 */
 		public StreamingBufferPImage()
 		{
+			_ring = new int[_width * _height];
 			_buffer = new PImage(_width, _height, PApplet.ARGB);
 		}
 		
@@ -192,72 +207,93 @@ public class StreamingBuffer
 			
 			_x = _width - k - 1;
 			
-			_buffer.loadPixels();
-
-			for(int i = 0; i < len; i++) {
-				if(startOnTop) {
-					_buffer.pixels[i * _width + _x] = data[i];
+			if(startOnTop) {
+				for(int i = 0, j = _x; i < len; i++, j += _width) {
+					_ring[j] = data[i];
 				}
-				else {
-					_buffer.pixels[(len - i - 1) * _width + _x] = data[i];
+			}
+			else {
+				for(int i = len - 1, j = _x; i >= 0; i--, j += _width) {
+					_ring[j] = data[i];
 				}
 			}
 			
-			_buffer.updatePixels();
-			
 			_counter++;
+			_dirty = true;
+		}
+		
+		@Override
+		public void clear()
+		{
+			Arrays.fill(_ring, 0);
 			
-			if(! _switch && _counter == _width) {
-				_switch = true;
-			}
+			_counter = 0;
+			_x = 0;
+			_dirty = true;
 		}
 
 		@Override
 		public void draw(int xStart, int yStart, int width, int height)
 		{
-			_p.blend(_buffer, _x, 0, _width - _x, _height, xStart, yStart, width - _x, height, PApplet.BLEND);
-			
-			if(_switch) {
-				_p.blend(_buffer, 0, 0, _x, _height, xStart + width - _x, yStart, _x, height, PApplet.BLEND);
+			if(_dirty) {
+				_compose();
 			}
+			
+			_p.image(_buffer, xStart, yStart, width, height);
 		}
 
 		@Override
 		public void dispose() { }
+		
+		/**
+		 * Copies the ring to the output image so that the newest column is the leftmost one.
+		 * Every new column shifts all others, so the whole image is composed, with two
+		 * array copies per row.
+		 */
+		private void _compose()
+		{
+			int[] out = _buffer.pixels;
+			int head = _width - _x;
+			
+			for(int y = 0, row = 0; y < _height; y++, row += _width) {
+				System.arraycopy(_ring, row + _x, out, row, head);
+				System.arraycopy(_ring, row, out, row + head, _x);
+			}
+			
+			_buffer.updatePixels();
+			_dirty = false;
+		}
 	}
 	
 	/**
 	 * Buffer implementation using GLGraphics.
 	 * 
 	 * This implementation is very fast, but it does not support alpha
-	 * channel transparency for the sake of speed. Also, the width argument
-	 * of the draw() method is currently ignored.
+	 * channel transparency for the sake of speed. The buffer is a single ring texture,
+	 * every new column is written over the oldest one and scrolling is done by offsetting
+	 * the texture coordinates when drawing. The cost per frame is thus independent of the buffer width.
 	 * 
 	 * @author christopher
 	 */
 	private class StreamingBufferGLGraphics extends StreamingBufferImpl
 	{
-		private int _counter, _x, _numBufferSwaps;
+		private int _counter, _x;
+		private final int[] _in;
 		private final GLTexture _column;
-		private final GLGraphicsOffScreen _buffer1, _buffer2;
+		private final GLGraphicsOffScreen _ring;
 		
 		/**
 		 * Ctor.
 		 */
 		public StreamingBufferGLGraphics()
 		{
-			_buffer1 = new GLGraphicsOffScreen(_p, _width, _height);
-			_buffer1.beginDraw();
-			_buffer1.clear(0, 0);
-			_buffer1.noStroke();
-			_buffer1.endDraw();
-			
-			_buffer2 = new GLGraphicsOffScreen(_p, _width, _height);
-			_buffer2.beginDraw();
-			_buffer2.clear(0, 0);
-			_buffer2.noStroke();
-			_buffer2.endDraw();
+			_ring = new GLGraphicsOffScreen(_p, _width, _height);
+			_ring.beginDraw();
+			_ring.clear(0, 0);
+			_ring.noStroke();
+			_ring.endDraw();
 			
+			_in = new int[_height];
 			_column = new GLTexture(_p, 1, _height);
 		}
 		
@@ -265,18 +301,8 @@ public class StreamingBuffer
 		public void add(int[] data, boolean startOnTop)
 		{
 			int k = _counter % _width;
-			GLGraphicsOffScreen active, passive;
-			
-			_x = _width - k - 1;	
 			
-			if(_numBufferSwaps % 2 == 0) {
-				active = _buffer1;
-				passive = _buffer2;
-			}
-			else {
-				active = _buffer2;
-				passive = _buffer1;
-			}
+			_x = _width - k - 1;
 			
 			int[] in;
 			
@@ -286,68 +312,53 @@ public class StreamingBuffer
 			else {
 				int len = data.length;
 				int lenm1 = len - 1;
-				int max = len / 2;
-				in = new int[len];
+				in = _in;
 				
-				for(int i = 0; i < max; i++) {
+				for(int i = 0; i < len; i++) {
 					in[i] = data[lenm1 - i];
-					in[lenm1 - i] = data[i];
-				}
-				
-				if(len % 2 == 1) {
-					in[max] = data[max];
 				}
 			}
 			
 			_column.putBuffer(in, PApplet.RGB, GLTexture.TEX_BYTE);
-					
-			active.beginDraw();
-			active.image(_column, _x, 0);
-			active.endDraw();
 			
-			if(k == 0 && _counter != 0) {
-				passive.beginDraw();
-				passive.clear(0, 0);
-				passive.endDraw();
-				
-				_numBufferSwaps++;
-			}
+			_ring.beginDraw();
+			_ring.image(_column, _x, 0);
+			_ring.endDraw();
 			
 			_counter++;
 		}
-
-		/**
-		 * Draws this buffer to a given area of the host PApplet.
-		 * 
-		 * @param xStart The first x-coordinate of the display area
-		 * @param yStart The first y-coordinate of the display area
-		 * @param width The width of the display area. Must be > 0. Ignored in this implementation
-		 * @param height The height of the display area. Must be > 0
-		 */
+		
+		@Override
+		public void clear()
+		{
+			_ring.beginDraw();
+			_ring.clear(0, 0);
+			_ring.endDraw();
+			
+			_counter = 0;
+			_x = 0;
+		}
+		
 		@Override
 		public void draw(int xStart, int yStart, int width, int height)
 		{
 			PGraphicsOpenGL p = (PGraphicsOpenGL) _p.g;
-			GLGraphicsOffScreen active, passive;
+			GLTexture ring = _ring.getTexture();
 			
-			if(_numBufferSwaps % 2 == 0) {
-				active = _buffer1;
-				passive = _buffer2;
-			}
-			else {
-				active = _buffer2;
-				passive = _buffer1;
-			}
+			float s = _x / (float) _width;
+			float w = width * (1 - s);
+			
+			ring.render(p, xStart, yStart, w, height, s, 0, 1, 1);
 			
-			p.image(active.getTexture(), xStart -_x, yStart, width, height);
-			p.image(passive.getTexture(), xStart -_x + _width - 1, yStart, width, height);
+			if(_x > 0) {
+				ring.render(p, xStart + w, yStart, width - w, height, 0, 0, s, 1);
+			}
 		}
-
+		
 		@Override
 		public void dispose()
 		{
-			_buffer1.dispose();
-			_buffer2.dispose();
+			_ring.dispose();
 			_column.delete();
 		}
 	}
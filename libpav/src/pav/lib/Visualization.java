@@ -20,6 +20,7 @@
 package pav.lib;
 
 import java.util.Map;
+import pav.lib.frame.FrameFeatures;
 import pav.lib.visualizer.Visualizer;
 
 /**
@@ -137,4 +138,68 @@ public interface Visualization
 	 * @throws PAVException On any errors
 	 */	
 	void process(float[] frame) throws PAVException;
+	
+	/**
+	 * Tells the visualization to process precomputed features instead of a frame.
+	 * 
+	 * @param features The features of the next frame of the audio signal. Must not be null
+	 * @throws PAVException On any errors
+	 */
+	void process(FrameFeatures features) throws PAVException;
+	
+	/**
+	 * Tells all visualizers to process a frame whose descriptors and transforms are
+	 * replaced by the given features, see Frame.update(float[], FrameFeatures).
+	 * 
+	 * @param frame The next frame of the audio signal. Must not be null
+	 * @param features The features to use instead of those of the frame. Must not be null
+	 * @throws PAVException On any errors
+	 */
+	void process(float[] frame, FrameFeatures features) throws PAVException;
+	
+	/**
+	 * Binds the visualizer at the specified level to an input. Used if the visualization
+	 * is fed by multiple audio sources. All visualizers are bound to input 0 by default.
+	 * 
+	 * @param level The level of the visualizer
+	 * @param input The input. Must be >= 0
+	 */
+	void setInput(int level, int input);
+	
+	/**
+	 * Returns the input the visualizer at the specified level is bound to.
+	 * 
+	 * @param level The level of the visualizer
+	 * @return The input
+	 */
+	int getInput(int level);
+	
+	/**
+	 * Tells the visualizers bound to the given input to process.
+	 * 
+	 * @param input The input the frame belongs to
+	 * @param frame The next frame of the audio signal of that input. Must not be null
+	 * @throws PAVException On any errors
+	 */
+	void process(int input, float[] frame) throws PAVException;
+	
+	/**
+	 * Tells the visualizers bound to the given input to process precomputed features.
+	 * 
+	 * @param input The input the features belong to
+	 * @param features The features of the next frame of the audio signal of that input. Must not be null
+	 * @throws PAVException On any errors
+	 */
+	void process(int input, FrameFeatures features) throws PAVException;
+	
+	/**
+	 * Tells the visualizers bound to the given input to process a frame whose descriptors
+	 * and transforms are replaced by the given features, see Frame.update(float[], FrameFeatures).
+	 * 
+	 * @param input The input the frame belongs to
+	 * @param frame The next frame of the audio signal of that input. Must not be null
+	 * @param features The features to use instead of those of the frame. Must not be null
+	 * @throws PAVException On any errors
+	 */
+	void process(int input, float[] frame, FrameFeatures features) throws PAVException;
 }
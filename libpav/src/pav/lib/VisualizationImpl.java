@@ -25,7 +25,9 @@ import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.TreeMap;
+import pav.lib.frame.AnalysisPlan;
 import pav.lib.frame.Frame;
+import pav.lib.frame.FrameFeatures;
 import pav.lib.visualizer.Visualizer;
 import processing.core.PApplet;
 
@@ -39,6 +41,8 @@ public class VisualizationImpl implements Visualization
 	private final PApplet _p;
 	private final TreeMap<Integer, Visualizer> _visualizers;
 	private final HashMap<String, Integer> _visualizerNames;
+	private final HashMap<Integer, Integer> _inputs;
+	private final AnalysisPlan _plan;
 	
 	/**
 	 * Ctor.
@@ -50,6 +54,8 @@ public class VisualizationImpl implements Visualization
 		_p = target;
 		_visualizers = new TreeMap<Integer, Visualizer>();
 		_visualizerNames = new HashMap<String, Integer>();
+		_inputs = new HashMap<Integer, Integer>();
+		_plan = new AnalysisPlan();
 	}
 		
 	/**
@@ -167,6 +173,8 @@ public class VisualizationImpl implements Visualization
 			remove.dispose();
 		}
 		
+		_inputs.remove(level);
+		
 		String key = null;
 			
 		for(Map.Entry<String, Integer> e : _visualizerNames.entrySet()) {
@@ -218,13 +226,69 @@ public class VisualizationImpl implements Visualization
 	@Override
 	public void process(float[] frame) throws PAVException
 	{
+		Frame.setInput(0);
 		Frame.update(frame);
-		
-		for(Visualizer v : visualizers()) {
-			v.process();
+		_process();
+	}
+	
+	@Override
+	public void process(FrameFeatures features) throws PAVException
+	{
+		Frame.setInput(0);
+		Frame.update(features);
+		_process();
+	}
+	
+	@Override
+	public void process(float[] frame, FrameFeatures features) throws PAVException
+	{
+		Frame.setInput(0);
+		Frame.update(frame, features);
+		_process();
+	}
+	
+	@Override
+	public void setInput(int level, int input)
+	{
+		if(input == 0) {
+			_inputs.remove(level);
+		}
+		else {
+			_inputs.put(level, input);
 		}
 	}
 	
+	@Override
+	public int getInput(int level)
+	{
+		Integer input = _inputs.get(level);
+		return (input == null) ? 0 : input;
+	}
+	
+	@Override
+	public void process(int input, float[] frame) throws PAVException
+	{
+		Frame.setInput(input);
+		Frame.update(frame);
+		_process(input);
+	}
+	
+	@Override
+	public void process(int input, FrameFeatures features) throws PAVException
+	{
+		Frame.setInput(input);
+		Frame.update(features);
+		_process(input);
+	}
+	
+	@Override
+	public void process(int input, float[] frame, FrameFeatures features) throws PAVException
+	{
+		Frame.setInput(input);
+		Frame.update(frame, features);
+		_process(input);
+	}
+	
 	/**
 	 * Returns a sorted list of the visualizers to draw to or an empty
 	 * set if no visualizers are added.
@@ -241,4 +305,42 @@ public class VisualizationImpl implements Visualization
 		
 		return vis;
 	}
+	
+	private void _process() throws PAVException
+	{
+		List<Visualizer> visualizers = visualizers();
+		_plan.clear();
+		
+		for(Visualizer v : visualizers) {
+			v.require(_plan);
+		}
+		
+		Frame.analyze(_plan);
+		
+		for(Visualizer v : visualizers) {
+			v.process();
+		}
+	}
+	
+	private void _process(int input) throws PAVException
+	{
+		_plan.clear();
+		
+		// visualizers of other inputs may need what these do not
+		_plan.requireUnknown();
+		
+		for(Map.Entry<Integer, Visualizer> e : _visualizers.entrySet()) {
+			if(getInput(e.getKey()) == input) {
+				e.getValue().require(_plan);
+			}
+		}
+		
+		Frame.analyze(_plan);
+		
+		for(Map.Entry<Integer, Visualizer> e : _visualizers.entrySet()) {
+			if(getInput(e.getKey()) == input) {
+				e.getValue().process();
+			}
+		}
+	}
 }
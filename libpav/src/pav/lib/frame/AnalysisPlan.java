@@ -0,0 +1,180 @@
+
+/*
+ * Processing Audio Visualization (PAV)
+ * Copyright (C) 2011  Christopher Pramerdorfer
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package pav.lib.frame;
+
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * The features of a frame that are needed, see Frame.analyze().
+ * 
+ * Visualizers declare what they use by adding it to a plan. Dependencies need not be
+ * declared, requiring the mel spectrum implies the spectrum and so on. Users that can not
+ * tell what they need call requireUnknown(), which keeps Frame from discarding anything.
+ * 
+ * @author christopher
+ */
+public class AnalysisPlan
+{
+	/**
+	 * The spectrum, see Frame.Transform.spectrum().
+	 */
+	public static final int SPECTRUM = 1;
+	
+	/**
+	 * The chroma, see Frame.Transform.chroma().
+	 */
+	public static final int CHROMA = 2;
+	
+	/**
+	 * The amplitude maximum, see Frame.Descriptor.amplitudeMax().
+	 */
+	public static final int AMPLITUDE_MAX = 4;
+	
+	/**
+	 * The RMS, see Frame.Descriptor.rms().
+	 */
+	public static final int RMS = 8;
+	
+	/**
+	 * The zero crossings and the zero crossing rate, see Frame.Descriptor.zeroCrossings().
+	 */
+	public static final int ZERO_CROSSINGS = 16;
+	
+	/**
+	 * The spectral centroid, see Frame.Descriptor.spectralCentroid().
+	 */
+	public static final int SPECTRAL_CENTROID = 32;
+	
+	/**
+	 * The beats, see Frame.Descriptor.beats().
+	 */
+	public static final int BEATS = 64;
+	
+	/**
+	 * The loudness descriptors, see Frame.Descriptor.loudness().
+	 */
+	public static final int LOUDNESS = 128;
+	
+	private int _features;
+	private boolean _complete;
+	private final TreeSet<Integer> _melSpectrums, _multiResolutions;
+	
+	/**
+	 * Ctor. Creates an empty plan.
+	 */
+	public AnalysisPlan()
+	{
+		_melSpectrums = new TreeSet<Integer>();
+		_multiResolutions = new TreeSet<Integer>();
+		
+		clear();
+	}
+	
+	/**
+	 * Adds features to the plan.
+	 * 
+	 * @param features The features, a combination of the constants of this class
+	 */
+	public void require(int features)
+	{
+		_features |= features;
+	}
+	
+	/**
+	 * Adds a mel spectrum to the plan, see Frame.Transform.melSpectrum().
+	 * 
+	 * @param numBands The number of bands. Must be > 0
+	 */
+	public void requireMelSpectrum(int numBands)
+	{
+		_melSpectrums.add(numBands);
+	}
+	
+	/**
+	 * Adds a multi resolution spectrum to the plan, see Frame.Transform.multiResolution().
+	 * 
+	 * @param numBands The number of bands. Must be > 0
+	 */
+	public void requireMultiResolution(int numBands)
+	{
+		_multiResolutions.add(numBands);
+	}
+	
+	/**
+	 * Tells the plan that features may be used that were not declared.
+	 */
+	public void requireUnknown()
+	{
+		_complete = false;
+	}
+	
+	/**
+	 * Whether all of the given features are part of the plan.
+	 * 
+	 * @param features The features, a combination of the constants of this class
+	 * @return Whether the features are required
+	 */
+	public boolean requires(int features)
+	{
+		return (_features & features) == features;
+	}
+	
+	/**
+	 * Returns the sizes of the mel spectra required. Must not be modified.
+	 * 
+	 * @return The numbers of bands
+	 */
+	public Set<Integer> melSpectrums()
+	{
+		return _melSpectrums;
+	}
+	
+	/**
+	 * Returns the sizes of the multi resolution spectra required. Must not be modified.
+	 * 
+	 * @return The numbers of bands
+	 */
+	public Set<Integer> multiResolutions()
+	{
+		return _multiResolutions;
+	}
+	
+	/**
+	 * Whether the plan contains everything that will be used, that is requireUnknown()
+	 * was not called.
+	 * 
+	 * @return Whether the plan is complete
+	 */
+	public boolean complete()
+	{
+		return _complete;
+	}
+	
+	/**
+	 * Removes all features from the plan.
+	 */
+	public void clear()
+	{
+		_features = 0;
+		_complete = true;
+		_melSpectrums.clear();
+		_multiResolutions.clear();
+	}
+}
@@ -0,0 +1,259 @@
+/*
+ * Processing Audio Visualization (PAV)
+ * Copyright (C) 2011  Christopher Pramerdorfer
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pav.lib.frame;
+
+/**
+ * Follows the envelopes of a number of bands over time.
+ * 
+ * For every band the following is maintained:
+ * <ul>
+ * <li>a smoothed value with separate attack and release times</li>
+ * <li>a peak that is held for a while and then falls off</li>
+ * <li>a maximum that slowly decays, and a gain derived from it</li>
+ * </ul>
+ * Additionally a decaying maximum over all bands is kept, which is meant to be used for
+ * scaling. It never falls below a fraction of the highest value seen, so quiet passages
+ * are amplified, but silence is not blown up to full scale.
+ * 
+ * Time constants are given in seconds. The time between two updates is measured, so the
+ * envelopes behave the same regardless of the frame rate. Envelopes for the spectrum and the
+ * mel spectrum of the current frame are provided by Frame.Envelope and shared by all users.
+ * The values returned must not be modified.
+ * 
+ * @author christopher
+ */
+public class BandEnvelope
+{
+	private static final float _maxStep = 0.5f;
+	
+	private final int _numBands;
+	private final float[] _values, _peaks, _peakAges, _bandMax, _gains;
+	
+	private float _attack, _release, _peakHold, _peakHalfLife, _maxHalfLife, _minGain;
+	private float _max, _frameMax, _ceiling;
+	private long _lastUpdate;
+	
+	/**
+	 * Ctor.
+	 * 
+	 * @param numBands The number of bands. Must be > 0
+	 */
+	public BandEnvelope(int numBands)
+	{
+		_numBands = numBands;
+		_values = new float[numBands];
+		_peaks = new float[numBands];
+		_peakAges = new float[numBands];
+		_bandMax = new float[numBands];
+		_gains = new float[numBands];
+		
+		setAttackRelease(0.01f, 0.25f);
+		setPeakHold(0.5f, 0.25f);
+		setMaxDecay(10, 0.1f);
+	}
+	
+	/**
+	 * Updates the envelopes with the next frame.
+	 * 
+	 * @param bands The band values. Must have at least from + numBands() values
+	 * @param from The index of the first band to use
+	 */
+	public void update(float[] bands, int from)
+	{
+		long now = System.nanoTime();
+		float dt = (_lastUpdate == 0) ? 0 : Math.min(_maxStep, (now - _lastUpdate) / 1e9f);
+		_lastUpdate = now;
+		
+		float attack = _coefficient(_attack, dt);
+		float release = _coefficient(_release, dt);
+		float peakDecay = _halfLife(_peakHalfLife, dt);
+		float maxDecay = _halfLife(_maxHalfLife, dt);
+		
+		float[] values = _values;
+		float[] peaks = _peaks;
+		float[] ages = _peakAges;
+		float[] bandMax = _bandMax;
+		float frameMax = Float.MIN_VALUE;
+		
+		for(int i = 0; i < _numBands; i++) {
+			float v = bands[from + i];
+			
+			if(v > frameMax) frameMax = v;
+			
+			float e = values[i];
+			values[i] = v + ((v > e) ? attack : release) * (e - v);
+			
+			if(v >= peaks[i]) {
+				peaks[i] = v;
+				ages[i] = 0;
+			}
+			else if((ages[i] += dt) > _peakHold) {
+				peaks[i] *= peakDecay;
+			}
+			
+			float m = bandMax[i] * maxDecay;
+			bandMax[i] = (v > m) ? v : m;
+		}
+		
+		if(frameMax > _ceiling) {
+			_ceiling = frameMax;
+		}
+		
+		float floor = Math.max(_ceiling * _minGain, Float.MIN_VALUE);
+		
+		for(int i = 0; i < _numBands; i++) {
+			_gains[i] = 1 / Math.max(bandMax[i], floor);
+		}
+		
+		_frameMax = frameMax;
+		_max = Math.max(Math.max(_max * maxDecay, frameMax), floor);
+	}
+	
+	/**
+	 * Sets the attack and release times of the smoothed values.
+	 * 
+	 * @param attack The time to follow a rising signal. Must be >= 0
+	 * @param release The time to follow a falling signal. Must be >= 0
+	 */
+	public void setAttackRelease(float attack, float release)
+	{
+		_attack = attack;
+		_release = release;
+	}
+	
+	/**
+	 * Sets how long peaks are held and how fast they fall off afterwards.
+	 * 
+	 * @param hold The time a peak is held. Must be >= 0
+	 * @param halfLife The time it takes a peak to fall to half its value after it was held. Must be > 0
+	 */
+	public void setPeakHold(float hold, float halfLife)
+	{
+		_peakHold = hold;
+		_peakHalfLife = halfLife;
+	}
+	
+	/**
+	 * Sets how fast the maxima decay.
+	 * 
+	 * @param halfLife The time it takes a maximum to decay to half its value. Must be > 0
+	 * @param minGain The fraction of the highest value ever seen the maxima can not fall below. Must be > 0 and <= 1
+	 */
+	public void setMaxDecay(float halfLife, float minGain)
+	{
+		_maxHalfLife = halfLife;
+		_minGain = minGain;
+	}
+	
+	/**
+	 * Returns the number of bands.
+	 * 
+	 * @return The number of bands
+	 */
+	public int numBands()
+	{
+		return _numBands;
+	}
+	
+	/**
+	 * Returns the smoothed band values.
+	 * 
+	 * @return The values
+	 */
+	public float[] values()
+	{
+		return _values;
+	}
+	
+	/**
+	 * Returns the band peaks.
+	 * 
+	 * @return The peaks
+	 */
+	public float[] peaks()
+	{
+		return _peaks;
+	}
+	
+	/**
+	 * Returns the decaying maxima of the bands.
+	 * 
+	 * @return The maxima
+	 */
+	public float[] bandMax()
+	{
+		return _bandMax;
+	}
+	
+	/**
+	 * Returns the gains that scale every band to about 1, based on the decaying maxima.
+	 * 
+	 * @return The gains
+	 */
+	public float[] gains()
+	{
+		return _gains;
+	}
+	
+	/**
+	 * Returns the decaying maximum over all bands. Meant to be used for scaling.
+	 * 
+	 * @return The maximum, always > 0
+	 */
+	public float max()
+	{
+		return _max;
+	}
+	
+	/**
+	 * Returns the maximum over all bands of the last frame.
+	 * 
+	 * @return The maximum, always > 0
+	 */
+	public float frameMax()
+	{
+		return _frameMax;
+	}
+	
+	/**
+	 * Forgets all maxima and peaks.
+	 */
+	public void reset()
+	{
+		for(int i = 0; i < _numBands; i++) {
+			_values[i] = 0;
+			_peaks[i] = 0;
+			_peakAges[i] = 0;
+			_bandMax[i] = 0;
+		}
+		
+		_max = 0;
+		_ceiling = 0;
+	}
+	
+	private static float _coefficient(float time, float dt)
+	{
+		return (time <= 0) ? 0 : (float) Math.exp(-dt / time);
+	}
+	
+	private static float _halfLife(float halfLife, float dt)
+	{
+		return (float) Math.pow(0.5, dt / halfLife);
+	}
+}
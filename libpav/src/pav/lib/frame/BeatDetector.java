@@ -0,0 +1,89 @@
+
+/*
+ * Processing Audio Visualization (PAV)
+ * Copyright (C) 2011  Christopher Pramerdorfer
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package pav.lib.frame;
+
+import ddf.minim.analysis.FFT;
+
+/**
+ * Detects beats by comparing the energy of a frame in a number of frequency ranges
+ * with the average energy of the last frames in these ranges.
+ * 
+ * The detector keeps a history of about one second, so it must see every frame of a
+ * stream. The history is discarded if the frame size changes.
+ * 
+ * @author christopher
+ */
+public class BeatDetector
+{
+	private static final int _historySize = 43;
+	private static final float _threshold = 1.5f;
+	private static final float[][] _ranges = { { 40, 150 }, { 200, 4000 }, { 6000, 16000 } };
+	
+	private final float[][] _history = new float[_ranges.length][_historySize];
+	private int _position, _count, _frameSize;
+	
+	/**
+	 * Adds a frame to the history and detects its beats.
+	 * 
+	 * @param fft The FFT of the frame, already forwarded. Must not be null
+	 * @return The beat flags, see Frame.Descriptor.beats()
+	 */
+	public int detect(FFT fft)
+	{
+		if(fft.timeSize() != _frameSize) {
+			// the energy depends on the frame size, so the history is of no use anymore
+			_frameSize = fft.timeSize();
+			_position = 0;
+			_count = 0;
+		}
+		
+		int beats = 0;
+		int pos = _position;
+		int count = _count;
+		
+		for(int r = 0; r < _ranges.length; r++) {
+			int from = fft.freqToIndex(_ranges[r][0]);
+			int to = fft.freqToIndex(_ranges[r][1]);
+			float energy = 0;
+			
+			for(int i = from; i <= to; i++) {
+				float v = fft.getBand(i);
+				energy += v * v;
+			}
+			
+			float[] history = _history[r];
+			float average = 0;
+			
+			for(int i = 0; i < count; i++) {
+				average += history[i];
+			}
+			
+			if(count == _historySize && energy > 0 && energy > _threshold * average / count) {
+				beats |= 1 << r;
+			}
+			
+			history[pos] = energy;
+		}
+		
+		_position = (pos + 1) % _historySize;
+		_count = Math.min(count + 1, _historySize);
+		
+		return beats;
+	}
+}
@@ -0,0 +1,153 @@
+
+/*
+ * Processing Audio Visualization (PAV)
+ * Copyright (C) 2011  Christopher Pramerdorfer
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package pav.lib.frame;
+
+/**
+ * Maps a spectrum to the 12 pitch classes of the equal tempered scale (chroma).
+ * 
+ * The mapping is calculated once per spectrum size, sample rate and tuning and stored
+ * sparsely, every bin contributes to the two pitch classes it lies between. Bins are
+ * weighted with the fraction of a semitone they cover, so that all octaves contribute
+ * about equally, bins wider than a semitone are weighted down. Pitch class 0 is C.
+ * 
+ * Low notes can only be told apart if the frame is long enough, at 44.1 kHz a frame of 2048
+ * samples resolves semitones from about 370 Hz up.
+ * 
+ * @author christopher
+ */
+public class ChromaFilterBank
+{
+	/**
+	 * The number of pitch classes.
+	 */
+	public static final int NUM_CLASSES = 12;
+	
+	private static final float _minFrequency = 55;
+	private static final float _maxFrequency = 5000;
+	
+	private final int _numBins;
+	private final float _sampleRate, _tuning;
+	private final int[] _bins, _classes;
+	private final float[] _weights;
+	
+	/**
+	 * Ctor.
+	 * 
+	 * @param numBins The number of bins of the spectra to filter. Must be > 1
+	 * @param sampleRate The sample rate of the audio data. Must be > 0
+	 * @param tuning The frequency of the concert pitch A4 in Hz, usually 440. Must be > 0
+	 */
+	public ChromaFilterBank(int numBins, float sampleRate, float tuning)
+	{
+		_numBins = numBins;
+		_sampleRate = sampleRate;
+		_tuning = tuning;
+		
+		float fDelta = sampleRate / (2 * (numBins - 1));
+		int from = Math.max(1, (int) Math.ceil(_minFrequency / fDelta));
+		int to = Math.min(numBins - 1, (int) Math.floor(_maxFrequency / fDelta));
+		int num = Math.max(0, to - from + 1);
+		
+		_bins = new int[num * 2];
+		_classes = new int[num * 2];
+		_weights = new float[num * 2];
+		
+		double semitone = Math.log(2) / 12;
+		
+		for(int i = 0, j = 0; i < num; i++, j += 2) {
+			int bin = from + i;
+			float f = bin * fDelta;
+			
+			// midi note number, 69 is A4
+			double pitch = 69 + 12 * Math.log(f / tuning) / Math.log(2);
+			int lower = (int) Math.floor(pitch);
+			float t = (float) (pitch - lower);
+			
+			// bins narrower than a semitone share it, wider ones are ambiguous
+			float r = (float) (fDelta / (f * semitone));
+			float weight = Math.min(r, 1 / r);
+			
+			_bins[j] = bin;
+			_classes[j] = _pitchClass(lower);
+			_weights[j] = (1 - t) * weight;
+			
+			_bins[j + 1] = bin;
+			_classes[j + 1] = _pitchClass(lower + 1);
+			_weights[j + 1] = t * weight;
+		}
+	}
+	
+	/**
+	 * Filters a given spectrum.
+	 * 
+	 * @param spectrum The input spectrum. Must have numBins() values
+	 * @return The intensities of the pitch classes, starting with C
+	 */
+	public float[] filter(float[] spectrum)
+	{
+		float[] out = new float[NUM_CLASSES];
+		int[] bins = _bins;
+		int[] classes = _classes;
+		float[] weights = _weights;
+		int len = bins.length;
+		
+		for(int i = 0; i < len; i++) {
+			out[classes[i]] += spectrum[bins[i]] * weights[i];
+		}
+		
+		return out;
+	}
+	
+	/**
+	 * Returns the number of bins of the spectra this bank was created for.
+	 * 
+	 * @return The number of bins
+	 */
+	public int numBins()
+	{
+		return _numBins;
+	}
+	
+	/**
+	 * Returns the sample rate this bank was created for.
+	 * 
+	 * @return The sample rate
+	 */
+	public float sampleRate()
+	{
+		return _sampleRate;
+	}
+	
+	/**
+	 * Returns the tuning this bank was created for.
+	 * 
+	 * @return The frequency of A4 in Hz
+	 */
+	public float tuning()
+	{
+		return _tuning;
+	}
+	
+	private static int _pitchClass(int note)
+	{
+		// midi note 0 is a C
+		int c = note % NUM_CLASSES;
+		return (c < 0) ? c + NUM_CLASSES : c;
+	}
+}
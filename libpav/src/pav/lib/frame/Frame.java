@@ -19,7 +19,9 @@
 
 package pav.lib.frame;
 
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.Iterator;
 import processing.core.PApplet;
 import ddf.minim.analysis.FFT;
 
@@ -34,6 +36,10 @@ public class Frame
 	private static float _sampleRate;
 	private static float[] _samples;
 	private static float[] _samplesWindowed;
+	private static float[] _window, _windowed;
+	private static float[] _silence;
+	private static long _frameIndex;
+	private static int _input;
 		
 	/**
 	 * Updates the current frame.
@@ -44,9 +50,63 @@ public class Frame
 	{
 		_samples = samples;
 		_samplesWindowed = null;
+		_frameIndex++;
 		
 		Descriptor._reset();
 		Transform._reset();
+		Descriptor._measure();
+		Transform._record();
+	}
+	
+	/**
+	 * Updates the current frame from precomputed features. The provided features are
+	 * returned as they are instead of being calculated. As the samples are not known,
+	 * the frame consists of silence, so all other descriptors and transforms are
+	 * calculated on silence.
+	 * 
+	 * @param features The features of the new frame. Must not be null
+	 */
+	public static void update(FrameFeatures features)
+	{
+		int len = features.sampleSize();
+		
+		if(_silence == null || _silence.length != len) {
+			_silence = new float[len];
+		}
+		
+		update(_silence, features);
+		
+		_samplesWindowed = _silence;
+	}
+	
+	/**
+	 * Updates the current frame, overriding some descriptors and transforms with the
+	 * provided features. Used to show the features of several frames combined, together
+	 * with the samples of the newest one. The mel spectra are calculated from the provided
+	 * spectrum unless they are provided as well.
+	 * 
+	 * @param samples The samples that make up the new frame. Must not be null
+	 * @param features The features to use. Must not be null
+	 */
+	public static void update(float[] samples, FrameFeatures features)
+	{
+		update(samples);
+		
+		Descriptor._rms = features.rms();
+		Descriptor._spectralCentroid = features.spectralCentroid();
+		Descriptor._beats = Descriptor._detected(features) ? 0 : features.beats();
+		
+		Transform._spectrum = Transform._result(features.spectrum());
+		
+		float[] mels = features.melSpectrum();
+		
+		if(mels != null) {
+			if(Transform._melSpectrums == null) {
+				Transform._melSpectrums = new HashMap<Integer, TransformResult>();
+			}
+			
+			Transform._melSpectrums.put(mels.length, Transform._result(mels));
+		}
 	}
 	
 	/**
@@ -69,6 +129,27 @@ public class Frame
 		return _sampleRate;
 	}
 	
+	/**
+	 * Sets the input the following frames are captured from. State that is kept across
+	 * frames, like loudness, the multi-resolution history and envelopes, is kept per input.
+	 * 
+	 * @param input The input. Must be >= 0. Defaults to 0
+	 */
+	public static void setInput(int input)
+	{
+		_input = input;
+	}
+	
+	/**
+	 * Gets the input the frame was captured from.
+	 * 
+	 * @return The input
+	 */
+	public static int getInput()
+	{
+		return _input;
+	}
+	
 	/**
 	 * Gets the samples of the frame. Must not be modified.
 	 * 
@@ -80,7 +161,9 @@ public class Frame
 	}
 	
 	/**
-	 * Gets the samples of the frame, windowed with a Hamming window.
+	 * Gets the samples of the frame, windowed with a Hamming window. Must not be modified.
+	 * The array is reused and overwritten by the next frame, so callers that need the
+	 * samples beyond the current frame must copy them.
 	 * 
 	 * @return The windowed samples
 	 */
@@ -91,17 +174,78 @@ public class Frame
 		}
 		
 		int len = _samples.length;
-		int lenDec = len - 1;
 		
-		_samplesWindowed = new float[len];
+		float[] samples = _samples;
+		float[] window = _window(len);
+		float[] windowed = _windowed;
 		
 		for(int i = 0; i < len; i++) {
-			_samplesWindowed[i] = _samples[i] * (0.54f - 0.46f * (float) Math.cos(PApplet.TWO_PI * i / lenDec));
+			windowed[i] = samples[i] * window[i];
 		}
 		
+		_samplesWindowed = windowed;
+		
 		return _samplesWindowed;
 	}
 	
+	/**
+	 * Returns the Hamming window for a frame length, the output array for the windowed
+	 * samples is allocated along with it.
+	 */
+	private static float[] _window(int len)
+	{
+		if(_window == null || _window.length != len) {
+			int lenDec = len - 1;
+			
+			_window = new float[len];
+			_windowed = new float[len];
+			
+			for(int i = 0; i < len; i++) {
+				_window[i] = 0.54f - 0.46f * (float) Math.cos(PApplet.TWO_PI * i / lenDec);
+			}
+		}
+		
+		return _window;
+	}
+	
+	/**
+	 * Calculates the features of the current frame a plan requires, in the order of their
+	 * dependencies, so that the work is done at once instead of whenever a feature is first
+	 * used. If the plan is complete, state kept for features the plan does not contain is
+	 * discarded: the loudness meter, the multi resolution history and unused filter banks. The
+	 * beat history is kept, as beats are also read outside of visualizers. Features not in the
+	 * plan can still be calculated on demand.
+	 * 
+	 * @param plan The plan. Must not be null
+	 */
+	public static void analyze(AnalysisPlan plan)
+	{
+		if(plan.complete()) {
+			Descriptor._retain(plan);
+			Transform._retain(plan);
+		}
+		
+		if(plan.requires(AnalysisPlan.AMPLITUDE_MAX)) Descriptor.amplitudeMax();
+		if(plan.requires(AnalysisPlan.RMS)) Descriptor.rms();
+		if(plan.requires(AnalysisPlan.ZERO_CROSSINGS)) Descriptor.zeroCrossingRate();
+		if(plan.requires(AnalysisPlan.LOUDNESS)) Descriptor.loudness();
+		
+		// everything based on the fft
+		if(plan.requires(AnalysisPlan.SPECTRAL_CENTROID)) Descriptor.spectralCentroid();
+		if(plan.requires(AnalysisPlan.BEATS)) Descriptor.beats();
+		if(plan.requires(AnalysisPlan.SPECTRUM)) Transform.spectrum();
+		
+		for(int numBands : plan.melSpectrums()) {
+			Transform.melSpectrum(numBands);
+		}
+		
+		if(plan.requires(AnalysisPlan.CHROMA)) Transform.chroma();
+		
+		for(int numBands : plan.multiResolutions()) {
+			Transform.multiResolution(numBands);
+		}
+	}
+	
 	/**
 	 * Frame descriptors.
 	 * 
@@ -111,11 +255,32 @@ public class Frame
 	 */
 	public static class Descriptor
 	{
+		/**
+		 * Beat flag - A kick drum was detected.
+		 */
+		public static final int BEAT_KICK = 1;
+		
+		/**
+		 * Beat flag - A snare drum was detected.
+		 */
+		public static final int BEAT_SNARE = 2;
+		
+		/**
+		 * Beat flag - A hi-hat was detected.
+		 */
+		public static final int BEAT_HAT = 4;
+		
+		private static HashMap<Integer, BeatDetector> _beatDetectors;
+		private static HashMap<Integer, Object> _beatsDetected;
+		
+		private static Integer _beats;
 		private static Float _amplitudeMax;
 		private static Float _rms;
 		private static Integer _zeroCrossings;
 		private static Float _zeroCrossingRate;
 		private static Float _spectralCentroid;		
+		private static HashMap<Integer, LoudnessMeter> _loudnessMeters;
+		private static HashMap<Integer, float[]> _loudnessMeasured;
 		
 		/**
 		 * Calculates the amplitude maximum, that is the maximum of the
@@ -162,18 +327,64 @@ public class Frame
 			}
 			
 			float[] samples = samplesWindowed();
-			float v = 0;
-			float l = samples.length;
+			int l = samples.length;
+			int l4 = l & ~3;
+			float v0 = 0, v1 = 0, v2 = 0, v3 = 0;
 			
-			for(int i = 0; i < l; i++) {
-				v += samples[i] * samples[i];
+			// independent sums, so that the additions do not wait for each other
+			for(int i = 0; i < l4; i += 4) {
+				float a = samples[i], b = samples[i + 1], c = samples[i + 2], d = samples[i + 3];
+				v0 += a * a;
+				v1 += b * b;
+				v2 += c * c;
+				v3 += d * d;
 			}
 			
-			v = v / l;
+			for(int i = l4; i < l; i++) {
+				v0 += samples[i] * samples[i];
+			}
+			
+			float v = ((v0 + v1) + (v2 + v3)) / l;
 			_rms = (float) Math.sqrt(v);
 			
 			return _rms;
 		}
+		
+		/**
+		 * Calculates the RMS of the given samples like rms() does for the frame, without
+		 * updating the frame. Useful to check frames that might not be analyzed at all.
+		 * 
+		 * @param samples The samples. Must not be null
+		 * @return The RMS value
+		 */
+		public static float rms(float[] samples)
+		{
+			int l = samples.length;
+			
+			if(l == 0) {
+				return 0;
+			}
+			
+			float[] window = _window(l);
+			int l4 = l & ~3;
+			float v0 = 0, v1 = 0, v2 = 0, v3 = 0;
+			
+			for(int i = 0; i < l4; i += 4) {
+				float a = samples[i] * window[i], b = samples[i + 1] * window[i + 1];
+				float c = samples[i + 2] * window[i + 2], d = samples[i + 3] * window[i + 3];
+				v0 += a * a;
+				v1 += b * b;
+				v2 += c * c;
+				v3 += d * d;
+			}
+			
+			for(int i = l4; i < l; i++) {
+				float a = samples[i] * window[i];
+				v0 += a * a;
+			}
+			
+			return (float) Math.sqrt(((v0 + v1) + (v2 + v3)) / l);
+		}
 
 		/**
 		 * Calculates the number of sign changes.
@@ -242,8 +453,9 @@ public class Frame
 			float sum = 0, centroid = 0;
 			
 			for(int i = 0; i < l; i++) {
-				centroid += fft.indexToFreq(i) * fft.getBand(i);
-				sum += fft.getBand(i);
+				float band = fft.getBand(i);
+				centroid += fft.indexToFreq(i) * band;
+				sum += band;
 			}
 			
 			_spectralCentroid = (sum > 0) ? centroid / sum : 0;
@@ -251,12 +463,152 @@ public class Frame
 			return _spectralCentroid;
 		}
 		
+		/**
+		 * Detects beats. A beat is detected if the energy in the frequency range typical for
+		 * an instrument is considerably higher than the average of the last second. As the
+		 * detection depends on the history, this should be called for every frame. Every input
+		 * has its own history, see Frame.setInput(). A frame updated more than once has no
+		 * beats after the first time, so that its beats do not fire again.
+		 * 
+		 * @return The beat flags, a combination of the BEAT constants of this class
+		 */
+		public static int beats()
+		{
+			if(_beats != null) {
+				return _beats;
+			}
+			
+			if(_beatDetectors == null) {
+				_beatDetectors = new HashMap<Integer, BeatDetector>();
+			}
+			
+			BeatDetector detector = _beatDetectors.get(_input);
+			
+			if(detector == null) {
+				detector = new BeatDetector();
+				_beatDetectors.put(_input, detector);
+			}
+			
+			_beats = _detected(_samples) ? 0 : detector.detect(Transform._fft());
+			
+			return _beats;
+		}
+		
+		/**
+		 * Returns the momentary loudness, that is the K-weighted loudness of the last 400 ms
+		 * according to ITU-R BS.1770. Unlike the other descriptors, loudness is measured on the
+		 * stream of frames. Measuring starts when a loudness descriptor is used for the first
+		 * time and continues with every frame from then on. Frames that were updated from
+		 * features only are not measured, and a frame updated more than once is measured once.
+		 * Every input has its own measurement, see Frame.setInput().
+		 * 
+		 * @return The loudness in LUFS, see LoudnessMeter
+		 */
+		public static float loudnessMomentary()
+		{
+			return _loudnessMeter().momentary();
+		}
+		
+		/**
+		 * Returns the short-term loudness, that is the K-weighted loudness of the last 3 s.
+		 * See loudnessMomentary().
+		 * 
+		 * @return The loudness in LUFS, see LoudnessMeter
+		 */
+		public static float loudnessShortTerm()
+		{
+			return _loudnessMeter().shortTerm();
+		}
+		
+		/**
+		 * Returns the momentary loudness on a linear scale, as the RMS of the K-weighted signal of
+		 * the last 400 ms. Can be used instead of rms() where perceived loudness matters, the range
+		 * of values is about the same. See loudnessMomentary().
+		 * 
+		 * @return The loudness
+		 */
+		public static float loudness()
+		{
+			return _loudnessMeter().momentaryRms();
+		}
+		
+		/**
+		 * Whether the beats of a frame of the current input were reported already. Records
+		 * the frame otherwise. Frames are shown more than once if an input has no new data.
+		 * 
+		 * @param frame The samples or the features of the frame
+		 * @return Whether the frame was seen before
+		 */
+		private static boolean _detected(Object frame)
+		{
+			if(_beatsDetected == null) {
+				_beatsDetected = new HashMap<Integer, Object>();
+			}
+			
+			if(_beatsDetected.get(_input) == frame) {
+				return true;
+			}
+			
+			_beatsDetected.put(_input, frame);
+			
+			return false;
+		}
+		
+		private static LoudnessMeter _loudnessMeter()
+		{
+			if(_loudnessMeters == null) {
+				_loudnessMeters = new HashMap<Integer, LoudnessMeter>();
+				_loudnessMeasured = new HashMap<Integer, float[]>();
+			}
+			
+			LoudnessMeter meter = _loudnessMeters.get(_input);
+			
+			if(meter == null || meter.sampleRate() != _sampleRate) {
+				meter = new LoudnessMeter(_sampleRate);
+				_loudnessMeters.put(_input, meter);
+				_loudnessMeasured.remove(_input);
+			}
+			
+			// frames are shown more than once if an input has no new data
+			if(_samples != _silence && _loudnessMeasured.get(_input) != _samples) {
+				meter.process(_samples);
+				_loudnessMeasured.put(_input, _samples);
+			}
+			
+			return meter;
+		}
+		
+		/**
+		 * Discards the state of descriptors that are not required.
+		 * 
+		 * @param plan The plan. Must be complete
+		 */
+		private static void _retain(AnalysisPlan plan)
+		{
+			if(! plan.requires(AnalysisPlan.LOUDNESS)) {
+				_loudnessMeters = null;
+				_loudnessMeasured = null;
+			}
+		}
+		
+		/**
+		 * Feeds the loudness meter of the current input, if it is in use. Loudness is measured
+		 * on every frame so that the filter state and windows stay continuous.
+		 */
+		private static void _measure()
+		{
+			if(_loudnessMeters != null && _loudnessMeters.containsKey(_input)) {
+				_loudnessMeter();
+			}
+		}
+		
 		/**
 		 * Resets all descriptors calculated. This must be called immediately after the
 		 * frame was updated.
 		 */
 		private static void _reset()
 		{
+			_beats = null;
 			_amplitudeMax = null;
 			_rms = null;
 			_zeroCrossings = null;
@@ -278,9 +630,17 @@ public class Frame
 		private static float _fftSampleRate;
 		private static boolean _fftForwarded;
 		private static HashMap<String, MelFilterBank> _melFilterBanks;
+		private static HashMap<String, ChromaFilterBank> _chromaFilterBanks;
+		private static HashMap<String, GoertzelBank> _goertzelBanks;
+		private static float _tuning = 440;
 		
 		private static TransformResult _spectrum;
 		private static HashMap<Integer, TransformResult> _melSpectrums;
+		private static TransformResult _chroma;
+		private static HashMap<String, TransformResult> _frequencies;
+		private static HashMap<Integer, TransformResult> _multiResolutions;
+		private static HashMap<Integer, MultiResolutionSpectrum> _multiResolutionSpectrums;
+		private static HashMap<Integer, float[]> _multiResolutionRecorded;
 				
 		/**
 		 * Returns the logarithm of the frequency intensity distribution of the frame.
@@ -296,21 +656,14 @@ public class Frame
 			
 			FFT fft = _fft();
 			int l = fft.specSize();
-			float min = Float.MAX_VALUE;
-			float max = Float.MIN_VALUE;
 			
 			float[] transform = new float[l];
 			
 			for(int i = 0; i < l; i++) {
-				float v = (float) Math.log10(fft.getBand(i) + 1);
-
-				if(v < min) min = v;
-				if(v > max) max = v;
-				
-				transform[i] = v;
+				transform[i] = (float) Math.log10(fft.getBand(i) + 1);
 			}
 			
-			_spectrum = new TransformResult(transform, min, max);
+			_spectrum = _result(transform);
 			
 			return _spectrum;
 		}
@@ -345,22 +698,172 @@ public class Frame
 			
 			float[] mels = _melFilterBanks.get(hash).filter(spectrum().frame(), _sampleRate);
 			
-			float min = Float.MAX_VALUE;
-			float max = Float.MIN_VALUE;
+			TransformResult result = _result(mels);
+			_melSpectrums.put(numBands, result);
 			
-			for(int i = 0; i < numBands; i++) {
-				float v = mels[i];
+			return result;
+		}
+
+		/**
+		 * Calculates the chroma of the current frame, that is the intensities of the 12 pitch
+		 * classes, starting with C. See ChromaFilterBank. The result must not be modified.
+		 * 
+		 * @return The transformed frame
+		 */
+		public static TransformResult chroma()
+		{
+			if(_chroma != null) {
+				return _chroma;
+			}
+			
+			if(_chromaFilterBanks == null) {
+				_chromaFilterBanks = new HashMap<String, ChromaFilterBank>();
+			}
+			
+			float[] spectrum = spectrum().frame();
+			String hash = spectrum.length + "-" + _sampleRate + "-" + _tuning;
+			ChromaFilterBank bank = _chromaFilterBanks.get(hash);
+			
+			if(bank == null) {
+				bank = new ChromaFilterBank(spectrum.length, _sampleRate, _tuning);
+				_chromaFilterBanks.put(hash, bank);
+			}
+			
+			_chroma = _result(bank.filter(spectrum));
+			
+			return _chroma;
+		}
+		
+		/**
+		 * Returns the intensities of the frame at a number of frequencies, on the same scale as
+		 * spectrum(). The intensities are measured with the Goertzel algorithm (see GoertzelBank),
+		 * which is cheaper than calculating the spectrum if only a few frequencies are needed.
+		 * Frames updated from features are not measured, their spectrum is used instead.
+		 * The result must not be modified.
+		 * 
+		 * @param frequencies The frequencies in Hz. Must not be null. Values must be > 0 and < the sample rate / 2
+		 * @return The transformed frame
+		 */
+		public static TransformResult frequencies(float[] frequencies)
+		{
+			if(_frequencies == null) {
+				_frequencies = new HashMap<String, TransformResult>();
+				_goertzelBanks = new HashMap<String, GoertzelBank>();
+			}
+			
+			String key = Arrays.toString(frequencies);
+			TransformResult result = _frequencies.get(key);
+			
+			if(result != null) {
+				return result;
+			}
+			
+			int len = frequencies.length;
+			float[] intensities;
+			
+			if(_spectrum != null && _samples == _silence) {
+				// features only, the spectrum was provided
+				float[] spectrum = _spectrum.frame();
+				float fDelta = _sampleRate / (2 * (spectrum.length - 1));
+				intensities = new float[len];
 				
-				if(v < min) min = v;
-				if(v > max) max = v;
+				for(int i = 0; i < len; i++) {
+					int band = Math.round(frequencies[i] / fDelta);
+					intensities[i] = spectrum[PApplet.constrain(band, 0, spectrum.length - 1)];
+				}
+			}
+			else {
+				String hash = key + "-" + _sampleRate;
+				GoertzelBank bank = _goertzelBanks.get(hash);
+				
+				if(bank == null) {
+					bank = new GoertzelBank(frequencies, _sampleRate);
+					_goertzelBanks.put(hash, bank);
+				}
+				
+				intensities = bank.filter(samplesWindowed());
+				
+				for(int i = 0; i < len; i++) {
+					intensities[i] = (float) Math.log10(intensities[i] + 1);
+				}
 			}
 			
-			TransformResult result = new TransformResult(mels, min, max);
-			_melSpectrums.put(numBands, result);
+			result = _result(intensities);
+			_frequencies.put(key, result);
 			
 			return result;
 		}
-
+		
+		/**
+		 * Calculates a spectrum with logarithmically spaced bands, using a long FFT for the low
+		 * bands and short ones for the high bands, see MultiResolutionSpectrum. The long FFT covers
+		 * the last four frames, which are recorded from the first call on. Frames updated from
+		 * features are not recorded, their spectrum is used instead, and a frame updated more than
+		 * once is recorded once. Every input has its own history, see Frame.setInput(). The result
+		 * must not be modified.
+		 * 
+		 * @param numBands The number of bands. Must be > 0
+		 * @return The transformed frame
+		 */
+		public static TransformResult multiResolution(int numBands)
+		{
+			if(_multiResolutions == null) {
+				_multiResolutions = new HashMap<Integer, TransformResult>();
+			}
+			
+			TransformResult result = _multiResolutions.get(numBands);
+			
+			if(result != null) {
+				return result;
+			}
+			
+			float[] bands;
+			
+			if(_spectrum != null && _samples == _silence) {
+				// features only, pool the provided spectrum into the bands
+				float[] spectrum = _spectrum.frame();
+				float fDelta = _sampleRate / (2 * (spectrum.length - 1));
+				bands = new float[numBands];
+				
+				for(int i = 1; i < spectrum.length; i++) {
+					int band = MultiResolutionSpectrum.frequencyToBand(i * fDelta, numBands, _sampleRate);
+					
+					if(spectrum[i] > bands[band]) {
+						bands[band] = spectrum[i];
+					}
+				}
+			}
+			else {
+				bands = _multiResolution().bands(numBands);
+			}
+			
+			result = _result(bands);
+			_multiResolutions.put(numBands, result);
+			
+			return result;
+		}
+		
+		/**
+		 * Sets the tuning used by chroma().
+		 * 
+		 * @param frequency The frequency of the concert pitch A4 in Hz, default is 440. Must be > 0
+		 */
+		public static void setTuning(float frequency)
+		{
+			_tuning = frequency;
+			_chroma = null;
+		}
+		
+		/**
+		 * Gets the tuning used by chroma().
+		 * 
+		 * @return The frequency of the concert pitch A4 in Hz
+		 */
+		public static float getTuning()
+		{
+			return _tuning;
+		}
+		
 		/**
 		 * Returns an FFT based on the settings of the song and frame currently played.
 		 * The FFT already has the updated data, that is forward() was already called.
@@ -394,6 +897,86 @@ public class Frame
 			return _fft;
 		}
 		
+		private static MultiResolutionSpectrum _multiResolution()
+		{
+			if(_multiResolutionSpectrums == null) {
+				_multiResolutionSpectrums = new HashMap<Integer, MultiResolutionSpectrum>();
+				_multiResolutionRecorded = new HashMap<Integer, float[]>();
+			}
+			
+			MultiResolutionSpectrum spectrum = _multiResolutionSpectrums.get(_input);
+			
+			if(spectrum == null || spectrum.frameSize() != _samples.length || spectrum.sampleRate() != _sampleRate) {
+				spectrum = new MultiResolutionSpectrum(_samples.length, _sampleRate);
+				_multiResolutionSpectrums.put(_input, spectrum);
+				_multiResolutionRecorded.remove(_input);
+			}
+			
+			// frames are shown more than once if an input has no new data
+			if(_samples != _silence && _multiResolutionRecorded.get(_input) != _samples) {
+				spectrum.update(_samples);
+				_multiResolutionRecorded.put(_input, _samples);
+			}
+			
+			return spectrum;
+		}
+		
+		/**
+		 * Discards the state of transforms that are not required.
+		 * 
+		 * @param plan The plan. Must be complete
+		 */
+		private static void _retain(AnalysisPlan plan)
+		{
+			if(plan.multiResolutions().isEmpty()) {
+				_multiResolutionSpectrums = null;
+				_multiResolutionRecorded = null;
+			}
+			
+			if(! plan.requires(AnalysisPlan.CHROMA)) {
+				_chromaFilterBanks = null;
+			}
+			
+			if(_melFilterBanks != null && _melFilterBanks.size() > plan.melSpectrums().size()) {
+				Iterator<String> it = _melFilterBanks.keySet().iterator();
+				
+				while(it.hasNext()) {
+					String hash = it.next();
+					
+					if(! plan.melSpectrums().contains(Integer.parseInt(hash.substring(0, hash.indexOf('-'))))) {
+						it.remove();
+					}
+				}
+			}
+		}
+		
+		/**
+		 * Records the frame for the multi resolution spectrum of the current input, if it is
+		 * in use. Every frame must be recorded so that the history stays continuous.
+		 */
+		private static void _record()
+		{
+			if(_multiResolutionSpectrums != null && _multiResolutionSpectrums.containsKey(_input)) {
+				_multiResolution();
+			}
+		}
+		
+		private static TransformResult _result(float[] frame)
+		{
+			float min = Float.MAX_VALUE;
+			float max = Float.MIN_VALUE;
+			int l = frame.length;
+			
+			for(int i = 0; i < l; i++) {
+				float v = frame[i];
+				
+				if(v < min) min = v;
+				if(v > max) max = v;
+			}
+			
+			return new TransformResult(frame, min, max);
+		}
+		
 		/**
 		 * Resets all calculated transforms. This must be called immediately after
 		 * the frame was updated.
@@ -401,9 +984,12 @@ public class Frame
 		private static void _reset()
 		{
 			_spectrum = null;
+			_chroma = null;
 			_fftForwarded = false;
 			
 			if(_melSpectrums != null) _melSpectrums.clear();
+			if(_frequencies != null) _frequencies.clear();
+			if(_multiResolutions != null) _multiResolutions.clear();
 		}
 		
 		/**
@@ -434,6 +1020,117 @@ public class Frame
 			{
 				return _fft().freqToIndex(frequency);
 			}
+			
+			/**
+			 * Returns the band of multiResolution() the given frequency would belong to.
+			 * 
+			 * @param frequency The frequency
+			 * @param numBands The number of bands. Must be > 0
+			 * @return The band the frequency belongs to
+			 */
+			public static int frequencyToMultiResolutionBand(float frequency, int numBands)
+			{
+				return MultiResolutionSpectrum.frequencyToBand(frequency, numBands, _sampleRate);
+			}
+		}
+	}
+	
+	/**
+	 * Band envelopes of the frame transforms, see BandEnvelope.
+	 * 
+	 * Envelopes are kept per input and band layout, and shared by everyone requesting the same
+	 * layout for the same input, see Frame.setInput(). They are updated at most once per frame,
+	 * when they are first requested.
+	 * 
+	 * @author christopher
+	 */
+	public static class Envelope
+	{
+		private static HashMap<String, BandEnvelope> _envelopes;
+		private static HashMap<String, Long> _updated;
+		
+		/**
+		 * Returns the envelope of the whole spectrum.
+		 * 
+		 * @return The envelope
+		 */
+		public static BandEnvelope spectrum()
+		{
+			return spectrum(0, Transform.spectrum().frame().length - 1);
+		}
+		
+		/**
+		 * Returns the envelope of a range of the spectrum.
+		 * 
+		 * @param from The index of the first band
+		 * @param to The index of the last band. Must be >= from and < the number of bands
+		 * @return The envelope
+		 */
+		public static BandEnvelope spectrum(int from, int to)
+		{
+			float[] bands = Transform.spectrum().frame();
+			return _get("spectrum-" + bands.length + "-" + from + "-" + to, bands, from, (to - from) + 1);
+		}
+		
+		/**
+		 * Returns the envelope of the mel spectrum.
+		 * 
+		 * @param numBands The number of mel scale bands. Must be > 0
+		 * @return The envelope
+		 */
+		public static BandEnvelope melSpectrum(int numBands)
+		{
+			return _get("mel-" + numBands, Transform.melSpectrum(numBands).frame(), 0, numBands);
+		}
+		
+		/**
+		 * Returns the envelope of a range of the multi resolution spectrum.
+		 * 
+		 * @param numBands The number of bands of the spectrum. Must be > 0
+		 * @param from The index of the first band
+		 * @param to The index of the last band. Must be >= from and < numBands
+		 * @return The envelope
+		 */
+		public static BandEnvelope multiResolution(int numBands, int from, int to)
+		{
+			float[] bands = Transform.multiResolution(numBands).frame();
+			return _get("multires-" + numBands + "-" + from + "-" + to, bands, from, (to - from) + 1);
+		}
+		
+		/**
+		 * Returns the envelope of the chroma.
+		 * 
+		 * @return The envelope
+		 */
+		public static BandEnvelope chroma()
+		{
+			return _get("chroma", Transform.chroma().frame(), 0, ChromaFilterBank.NUM_CLASSES);
+		}
+		
+		private static BandEnvelope _get(String layout, float[] bands, int from, int numBands)
+		{
+			String key = _input + "-" + layout;
+			
+			if(_envelopes == null) {
+				_envelopes = new HashMap<String, BandEnvelope>();
+				_updated = new HashMap<String, Long>();
+			}
+			
+			BandEnvelope envelope = _envelopes.get(key);
+			
+			if(envelope == null) {
+				envelope = new BandEnvelope(numBands);
+				_envelopes.put(key, envelope);
+			}
+			
+			Long updated = _updated.get(key);
+			
+			if(updated == null || updated != _frameIndex) {
+				envelope.update(bands, from);
+				_updated.put(key, _frameIndex);
+			}
+			
+			return envelope;
 		}
 	}
 		
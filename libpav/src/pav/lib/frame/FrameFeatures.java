@@ -0,0 +1,113 @@
+/*
+ * Processing Audio Visualization (PAV)
+ * Copyright (C) 2011  Christopher Pramerdorfer
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pav.lib.frame;
+
+/**
+ * Precomputed features of a frame. Used to update Frame without having the
+ * samples, e.g. if the analysis was done on another machine.
+ * 
+ * @author christopher
+ */
+public class FrameFeatures
+{
+	private final int _sampleSize;
+	private final float[] _spectrum, _melSpectrum;
+	private final float _rms, _spectralCentroid;
+	private final int _beats;
+	
+	/**
+	 * Ctor.
+	 * 
+	 * @param sampleSize The number of samples of the frame the features were calculated for. Must be > 0
+	 * @param spectrum The spectrum, see Frame.Transform.spectrum(). Must not be null
+	 * @param melSpectrum The mel spectrum, see Frame.Transform.melSpectrum(). May be null
+	 * @param rms The RMS, see Frame.Descriptor.rms()
+	 * @param spectralCentroid The spectral centroid, see Frame.Descriptor.spectralCentroid()
+	 * @param beats The beat flags, see Frame.Descriptor.beats()
+	 */
+	public FrameFeatures(int sampleSize, float[] spectrum, float[] melSpectrum, float rms, float spectralCentroid, int beats)
+	{
+		_sampleSize = sampleSize;
+		_spectrum = spectrum;
+		_melSpectrum = melSpectrum;
+		_rms = rms;
+		_spectralCentroid = spectralCentroid;
+		_beats = beats;
+	}
+	
+	/**
+	 * Returns the number of samples of the frame.
+	 * 
+	 * @return The sample size
+	 */
+	public int sampleSize()
+	{
+		return _sampleSize;
+	}
+	
+	/**
+	 * Returns the spectrum. Must not be modified.
+	 * 
+	 * @return The spectrum
+	 */
+	public float[] spectrum()
+	{
+		return _spectrum;
+	}
+	
+	/**
+	 * Returns the mel spectrum. Must not be modified.
+	 * 
+	 * @return The mel spectrum or null if not available
+	 */
+	public float[] melSpectrum()
+	{
+		return _melSpectrum;
+	}
+	
+	/**
+	 * Returns the RMS.
+	 * 
+	 * @return The RMS
+	 */
+	public float rms()
+	{
+		return _rms;
+	}
+	
+	/**
+	 * Returns the spectral centroid.
+	 * 
+	 * @return The spectral centroid
+	 */
+	public float spectralCentroid()
+	{
+		return _spectralCentroid;
+	}
+	
+	/**
+	 * Returns the beat flags.
+	 * 
+	 * @return The beat flags
+	 */
+	public int beats()
+	{
+		return _beats;
+	}
+}
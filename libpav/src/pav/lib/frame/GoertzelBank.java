@@ -0,0 +1,104 @@
+
+/*
+ * Processing Audio Visualization (PAV)
+ * Copyright (C) 2011  Christopher Pramerdorfer
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package pav.lib.frame;
+
+/**
+ * Measures the intensities of a fixed set of frequencies with the Goertzel algorithm.
+ * 
+ * For k frequencies and a frame of N samples this takes O(N * k) operations, which is less
+ * than an FFT if only a few frequencies are of interest. The coefficients are calculated
+ * once per sample rate. The intensities equal the magnitudes an FFT of the same frame would
+ * have at these frequencies, the frequencies need not be centered on FFT bins.
+ * 
+ * @author christopher
+ */
+public class GoertzelBank
+{
+	private final float[] _frequencies;
+	private final float _sampleRate;
+	private final float[] _coefficients;
+	
+	/**
+	 * Ctor.
+	 * 
+	 * @param frequencies The frequencies to measure, in Hz. Must not be null. Values must be > 0 and < sampleRate / 2
+	 * @param sampleRate The sample rate of the audio data. Must be > 0
+	 */
+	public GoertzelBank(float[] frequencies, float sampleRate)
+	{
+		int len = frequencies.length;
+		
+		_frequencies = frequencies.clone();
+		_sampleRate = sampleRate;
+		_coefficients = new float[len];
+		
+		for(int i = 0; i < len; i++) {
+			_coefficients[i] = (float) (2 * Math.cos(2 * Math.PI * frequencies[i] / sampleRate));
+		}
+	}
+	
+	/**
+	 * Measures the intensities of the frequencies in a frame.
+	 * 
+	 * @param samples The frame, usually windowed. Must not be null
+	 * @return The magnitudes, in the order of the frequencies
+	 */
+	public float[] filter(float[] samples)
+	{
+		int len = _coefficients.length;
+		int n = samples.length;
+		float[] out = new float[len];
+		
+		for(int i = 0; i < len; i++) {
+			float c = _coefficients[i];
+			float s1 = 0, s2 = 0;
+			
+			for(int j = 0; j < n; j++) {
+				float s = samples[j] + c * s1 - s2;
+				s2 = s1;
+				s1 = s;
+			}
+			
+			float power = s1 * s1 + s2 * s2 - c * s1 * s2;
+			out[i] = (power > 0) ? (float) Math.sqrt(power) : 0;
+		}
+		
+		return out;
+	}
+	
+	/**
+	 * Returns the frequencies measured. Must not be modified.
+	 * 
+	 * @return The frequencies in Hz
+	 */
+	public float[] frequencies()
+	{
+		return _frequencies;
+	}
+	
+	/**
+	 * Returns the sample rate this bank was created for.
+	 * 
+	 * @return The sample rate
+	 */
+	public float sampleRate()
+	{
+		return _sampleRate;
+	}
+}
@@ -0,0 +1,237 @@
+/*
+ * Processing Audio Visualization (PAV)
+ * Copyright (C) 2011  Christopher Pramerdorfer
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pav.lib.frame;
+
+/**
+ * A streaming loudness meter according to ITU-R BS.1770.
+ * 
+ * The signal is K-weighted by a high shelf and a high pass filter, whose state is kept
+ * between frames. The mean square of the filtered signal is accumulated in blocks of 10 ms,
+ * which are stored in a ring buffer. Momentary loudness covers the last 400 ms, short-term
+ * loudness the last 3 s. Frames may have any size, processing is linear in the frame size
+ * and does not allocate memory.
+ * 
+ * @author christopher
+ */
+public class LoudnessMeter
+{
+	/**
+	 * The lowest loudness reported, in LUFS. Quieter signals, including silence, are reported with this value.
+	 */
+	public static final float MIN_LOUDNESS = -70;
+	
+	private static final int _blocksPerSecond = 100;
+	private static final int _momentaryBlocks = 40;
+	private static final int _shortTermBlocks = 300;
+	
+	private final float _sampleRate;
+	private final int _blockSize;
+	private final double[] _blocks;
+	
+	// filter coefficients, the leading a0 is normalized to 1
+	private final double _b0, _b1, _b2, _a1, _a2;
+	private final double _c0, _c1, _c2, _d1, _d2;
+	
+	private double _s1, _s2, _t1, _t2;
+	private double _block, _momentary, _shortTerm;
+	private int _blockFill, _head, _count;
+	
+	/**
+	 * Ctor.
+	 * 
+	 * @param sampleRate The sample rate of the signal. Must be > 0
+	 */
+	public LoudnessMeter(float sampleRate)
+	{
+		_sampleRate = sampleRate;
+		_blockSize = Math.max(1, Math.round(sampleRate / _blocksPerSecond));
+		_blocks = new double[_shortTermBlocks];
+		
+		// high shelf, models the acoustic effect of the head
+		double k = Math.tan(Math.PI * 1681.974450955533 / sampleRate);
+		double q = 0.7071752369554196;
+		double vh = Math.pow(10, 3.999843853973347 / 20);
+		double vb = Math.pow(vh, 0.4996667741545416);
+		double a0 = 1 + k / q + k * k;
+		
+		_b0 = (vh + vb * k / q + k * k) / a0;
+		_b1 = 2 * (k * k - vh) / a0;
+		_b2 = (vh - vb * k / q + k * k) / a0;
+		_a1 = 2 * (k * k - 1) / a0;
+		_a2 = (1 - k / q + k * k) / a0;
+		
+		// high pass, the revised low frequency B curve
+		k = Math.tan(Math.PI * 38.13547087602444 / sampleRate);
+		q = 0.5003270373238773;
+		a0 = 1 + k / q + k * k;
+		
+		_c0 = 1;
+		_c1 = -2;
+		_c2 = 1;
+		_d1 = 2 * (k * k - 1) / a0;
+		_d2 = (1 - k / q + k * k) / a0;
+	}
+	
+	/**
+	 * Processes the next frame of the signal.
+	 * 
+	 * @param samples The samples. Must not be null
+	 */
+	public void process(float[] samples)
+	{
+		int len = samples.length;
+		double s1 = _s1, s2 = _s2, t1 = _t1, t2 = _t2;
+		double block = _block;
+		int fill = _blockFill;
+		
+		for(int i = 0; i < len; i++) {
+			// both stages in transposed direct form II
+			double x = samples[i];
+			double y = _b0 * x + s1;
+			s1 = _b1 * x - _a1 * y + s2;
+			s2 = _b2 * x - _a2 * y;
+			
+			double z = _c0 * y + t1;
+			t1 = _c1 * y - _d1 * z + t2;
+			t2 = _c2 * y - _d2 * z;
+			
+			block += z * z;
+			
+			if(++fill == _blockSize) {
+				_addBlock(block / _blockSize);
+				block = 0;
+				fill = 0;
+			}
+		}
+		
+		_s1 = s1;
+		_s2 = s2;
+		_t1 = t1;
+		_t2 = t2;
+		_block = block;
+		_blockFill = fill;
+	}
+	
+	/**
+	 * Returns the momentary loudness, measured over the last 400 ms.
+	 * 
+	 * @return The loudness in LUFS, >= MIN_LOUDNESS
+	 */
+	public float momentary()
+	{
+		return _lufs(_momentary / Math.max(1, Math.min(_count, _momentaryBlocks)));
+	}
+	
+	/**
+	 * Returns the short-term loudness, measured over the last 3 s.
+	 * 
+	 * @return The loudness in LUFS, >= MIN_LOUDNESS
+	 */
+	public float shortTerm()
+	{
+		return _lufs(_shortTerm / Math.max(1, _count));
+	}
+	
+	/**
+	 * Returns the momentary loudness as the root mean square of the K-weighted signal.
+	 * Unlike momentary(), this is on a linear scale comparable to the RMS of the signal.
+	 * 
+	 * @return The K-weighted RMS, >= 0
+	 */
+	public float momentaryRms()
+	{
+		return (float) Math.sqrt(_momentary / Math.max(1, Math.min(_count, _momentaryBlocks)));
+	}
+	
+	/**
+	 * Returns the sample rate this meter was created for.
+	 * 
+	 * @return The sample rate
+	 */
+	public float sampleRate()
+	{
+		return _sampleRate;
+	}
+	
+	/**
+	 * Resets the filters and discards all measured blocks.
+	 */
+	public void reset()
+	{
+		_s1 = _s2 = _t1 = _t2 = 0;
+		_block = _momentary = _shortTerm = 0;
+		_blockFill = _head = _count = 0;
+	}
+	
+	private void _addBlock(double meanSquare)
+	{
+		double[] blocks = _blocks;
+		int head = _head;
+		
+		// leaving the windows, if they were full
+		if(_count >= _momentaryBlocks) {
+			int m = head - _momentaryBlocks;
+			_momentary -= blocks[(m < 0) ? m + _shortTermBlocks : m];
+		}
+		
+		if(_count == _shortTermBlocks) {
+			_shortTerm -= blocks[head];
+		}
+		
+		blocks[head] = meanSquare;
+		_momentary += meanSquare;
+		_shortTerm += meanSquare;
+		_head = (head + 1) % _shortTermBlocks;
+		
+		if(_count < _shortTermBlocks) {
+			_count++;
+		}
+		
+		if(_head == 0) {
+			_resync();
+		}
+	}
+	
+	private void _resync()
+	{
+		// running sums drift, so they are recalculated once per revolution
+		double[] blocks = _blocks;
+		double momentary = 0, shortTerm = 0;
+		
+		for(int i = 0; i < _count; i++) {
+			shortTerm += blocks[i];
+		}
+		
+		for(int i = 1, n = Math.min(_count, _momentaryBlocks); i <= n; i++) {
+			momentary += blocks[_shortTermBlocks - i];
+		}
+		
+		_momentary = Math.max(0, momentary);
+		_shortTerm = Math.max(0, shortTerm);
+	}
+	
+	private float _lufs(double meanSquare)
+	{
+		if(meanSquare <= 0) {
+			return MIN_LOUDNESS;
+		}
+		
+		return Math.max(MIN_LOUDNESS, (float) (-0.691 + 10 * Math.log10(meanSquare)));
+	}
+}
@@ -30,6 +30,11 @@ public class MelFilterBank
 	private final float _minMel, _maxMel, _melDelta;
 	private final MelFilter[] _filters;
 	
+	private int _numBins;
+	private float _sampleRate;
+	private int[] _starts;
+	private float[][] _weights;
+	
 	/**
 	 * Ctor.
 	 * 
@@ -63,7 +68,8 @@ public class MelFilterBank
 	}
 	
 	/**
-	 * Filters a given spectrum.
+	 * Filters a given spectrum. The weights of the filters are calculated on the first call
+	 * and whenever the size of the spectrum or the sample rate changes.
 	 * 
 	 * @param spectrum The input spectrum. Must not be null
 	 * @param sampleRate The sample rate of the audio data. Must be > 0
@@ -73,18 +79,24 @@ public class MelFilterBank
 	{
 		int l = spectrum.length;
 		int fl = _filters.length;
-		float fDelta = (sampleRate / 2) / l;
-		float fDelta2 = fDelta / 2;
 		
-		float[] mel = new float[l];
-		float[] out = new float[fl];
-		
-		for(int i = 0; i < l; i++) {
-			mel[i] = freqToMel(i * fDelta + fDelta2);
+		if(_weights == null || _numBins != l || _sampleRate != sampleRate) {
+			_layout(l, sampleRate);
 		}
 		
+		float[] out = new float[fl];
+		
 		for(int i = 0; i < fl; i++) {
-			out[i] = _filters[i].filter(mel, spectrum);
+			float[] weights = _weights[i];
+			int start = _starts[i];
+			int wl = weights.length;
+			float intensity = 0;
+			
+			for(int j = 0; j < wl; j++) {
+				intensity += spectrum[start + j] * weights[j];
+			}
+			
+			out[i] = intensity;
 		}
 		
 		return out;
@@ -112,6 +124,46 @@ public class MelFilterBank
 		return (float) (700 * (Math.exp(mel / 1127) - 1));
 	}
 	
+	private void _layout(int numBins, float sampleRate)
+	{
+		int fl = _filters.length;
+		float fDelta = (sampleRate / 2) / numBins;
+		float fDelta2 = fDelta / 2;
+		float[] mel = new float[numBins];
+		
+		for(int i = 0; i < numBins; i++) {
+			mel[i] = freqToMel(i * fDelta + fDelta2);
+		}
+		
+		_starts = new int[fl];
+		_weights = new float[fl][];
+		
+		for(int i = 0; i < fl; i++) {
+			MelFilter filter = _filters[i];
+			int start = 0;
+			
+			while(start < numBins && mel[start] < filter._melMin) {
+				start++;
+			}
+			
+			int end = start;
+			
+			while(end < numBins && mel[end] <= filter._melMax) {
+				end++;
+			}
+			
+			_starts[i] = start;
+			_weights[i] = new float[end - start];
+			
+			for(int j = start; j < end; j++) {
+				_weights[i][j - start] = filter.weight(mel[j]);
+			}
+		}
+		
+		_numBins = numBins;
+		_sampleRate = sampleRate;
+	}
+	
 	/**
 	 * A Mel filter.
 	 * 
@@ -137,30 +189,15 @@ public class MelFilterBank
 		}
 		
 		/**
-		 * Processes a number of given mel frequencies.
+		 * Returns the weight of a mel frequency.
 		 * 
-		 * @param mels A number of mel frequencies. Must not be null
-		 * @param intensities The intensities of the mel frequencies. Must not be null and of same length as mels
-		 * @return The accumulated intensity of this filter
+		 * @param v The mel frequency. Must be between the min and max mel of this filter
+		 * @return The weight
 		 */
-		public float filter(float[] mels, float[] intensities)
+		public float weight(float v)
 		{
-			float intensity = 0;
-			
-			int l = mels.length;
-			
-			for(int i = 0; i < l; i++) {
-				float v = mels[i];
-				
-				if(v < _melMin) continue;
-				if(v > _melMax) break;
-				
-				float k = (v <= _melCenter) ? (_melCenter - v) / (_melCenter - _melMin) : 1 - ((v - _melCenter) / (_melMax - _melCenter));
-				
-				intensity += intensities[i] * k * _vMax;
-			}
-			
-			return intensity;
+			float k = (v <= _melCenter) ? (_melCenter - v) / (_melCenter - _melMin) : 1 - ((v - _melCenter) / (_melMax - _melCenter));
+			return k * _vMax;
 		}
 	}
 }
@@ -0,0 +1,284 @@
+
+/*
+ * Processing Audio Visualization (PAV)
+ * Copyright (C) 2011  Christopher Pramerdorfer
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package pav.lib.frame;
+
+import java.util.HashMap;
+import ddf.minim.analysis.FFT;
+
+/**
+ * A spectrum with logarithmically spaced bands, calculated with FFTs of different sizes.
+ * 
+ * The most recent samples are kept in a history of four frames. Low bands are taken from
+ * a long FFT over the whole history, which resolves bass notes, high bands from short FFTs
+ * over the newest samples, which react fast. Every band uses the shortest FFT whose bins are
+ * at most as wide as the band itself. Bands without a bin of their own are interpolated.
+ * 
+ * The band layout (the plan) is calculated once per number of bands. FFTs are only run for
+ * the sizes a plan needs, at most once per frame. Intensities are on the same scale as
+ * Frame.Transform.spectrum().
+ * 
+ * @author christopher
+ */
+public class MultiResolutionSpectrum
+{
+	/**
+	 * The lower edge of the lowest band, in Hz.
+	 */
+	public static final float MIN_FREQUENCY = 20;
+	
+	private static final int _historyFrames = 4;
+	private static final int _minSize = 64;
+	
+	private final int _frameSize;
+	private final float _sampleRate;
+	private final float[] _history;
+	private final int[] _sizes;
+	private final FFT[] _ffts;
+	private final float[][] _windows, _buffers, _magnitudes;
+	private final boolean[] _current;
+	private final HashMap<Integer, Plan> _plans;
+	
+	/**
+	 * Ctor.
+	 * 
+	 * @param frameSize The number of samples per frame. Must be a power of two
+	 * @param sampleRate The sample rate of the audio data. Must be > 0
+	 */
+	public MultiResolutionSpectrum(int frameSize, float sampleRate)
+	{
+		_frameSize = frameSize;
+		_sampleRate = sampleRate;
+		_history = new float[frameSize * _historyFrames];
+		_sizes = new int[] { frameSize * _historyFrames, frameSize, Math.max(_minSize, frameSize / 4) };
+		_plans = new HashMap<Integer, Plan>();
+		
+		int num = _sizes.length;
+		
+		_ffts = new FFT[num];
+		_windows = new float[num][];
+		_buffers = new float[num][];
+		_magnitudes = new float[num][];
+		_current = new boolean[num];
+		
+		for(int t = 0; t < num; t++) {
+			int size = _sizes[t];
+			int sizeDec = size - 1;
+			
+			_ffts[t] = new FFT(size, sampleRate);
+			_ffts[t].noAverages();
+			_windows[t] = new float[size];
+			_buffers[t] = new float[size];
+			_magnitudes[t] = new float[size / 2 + 1];
+			
+			// the same hamming window as Frame.samplesWindowed(), scaled to the frame size
+			float scale = (float) frameSize / size;
+			
+			for(int i = 0; i < size; i++) {
+				_windows[t][i] = scale * (0.54f - 0.46f * (float) Math.cos(2 * Math.PI * i / sizeDec));
+			}
+		}
+	}
+	
+	/**
+	 * Adds the next frame to the history.
+	 * 
+	 * @param samples The samples of the frame. Must not be null
+	 */
+	public void update(float[] samples)
+	{
+		float[] history = _history;
+		int len = Math.min(samples.length, history.length);
+		
+		System.arraycopy(history, len, history, 0, history.length - len);
+		System.arraycopy(samples, samples.length - len, history, history.length - len, len);
+		
+		for(int t = 0; t < _current.length; t++) {
+			_current[t] = false;
+		}
+	}
+	
+	/**
+	 * Calculates the bands of the newest frame.
+	 * 
+	 * @param numBands The number of bands. Must be > 0
+	 * @return The intensities of the bands, from low to high
+	 */
+	public float[] bands(int numBands)
+	{
+		Plan plan = _plan(numBands);
+		float[] out = new float[numBands];
+		
+		for(int t = 0; t < _sizes.length; t++) {
+			if(plan.uses[t] && ! _current[t]) {
+				_transform(t);
+			}
+		}
+		
+		for(int b = 0; b < numBands; b++) {
+			float[] m = _magnitudes[plan.tiers[b]];
+			int from = plan.from[b];
+			int to = plan.to[b];
+			float v;
+			
+			if(from > to) {
+				float f = plan.fractions[b];
+				v = m[to] * (1 - f) + m[to + 1] * f;
+			}
+			else {
+				v = m[from];
+				
+				for(int i = from + 1; i <= to; i++) {
+					if(m[i] > v) v = m[i];
+				}
+			}
+			
+			out[b] = (float) Math.log10(v + 1);
+		}
+		
+		return out;
+	}
+	
+	/**
+	 * Returns the band a frequency belongs to.
+	 * 
+	 * @param frequency The frequency in Hz
+	 * @param numBands The number of bands. Must be > 0
+	 * @param sampleRate The sample rate of the audio data. Must be > 0
+	 * @return The index of the band, between 0 and numBands - 1
+	 */
+	public static int frequencyToBand(float frequency, int numBands, float sampleRate)
+	{
+		double t = Math.log(frequency / MIN_FREQUENCY) / Math.log((sampleRate / 2) / MIN_FREQUENCY);
+		return Math.max(0, Math.min(numBands - 1, (int) Math.floor(t * numBands)));
+	}
+	
+	/**
+	 * Returns the number of samples per frame this spectrum was created for.
+	 * 
+	 * @return The frame size
+	 */
+	public int frameSize()
+	{
+		return _frameSize;
+	}
+	
+	/**
+	 * Returns the sample rate this spectrum was created for.
+	 * 
+	 * @return The sample rate
+	 */
+	public float sampleRate()
+	{
+		return _sampleRate;
+	}
+	
+	private void _transform(int tier)
+	{
+		int size = _sizes[tier];
+		int offset = _history.length - size;
+		float[] window = _windows[tier];
+		float[] buffer = _buffers[tier];
+		float[] magnitudes = _magnitudes[tier];
+		
+		for(int i = 0; i < size; i++) {
+			buffer[i] = _history[offset + i] * window[i];
+		}
+		
+		FFT fft = _ffts[tier];
+		fft.forward(buffer);
+		
+		for(int i = 0; i < magnitudes.length; i++) {
+			magnitudes[i] = fft.getBand(i);
+		}
+		
+		_current[tier] = true;
+	}
+	
+	private Plan _plan(int numBands)
+	{
+		Plan plan = _plans.get(numBands);
+		
+		if(plan == null) {
+			plan = new Plan(numBands);
+			_plans.put(numBands, plan);
+		}
+		
+		return plan;
+	}
+	
+	/**
+	 * Where every band is taken from.
+	 * 
+	 * @author christopher
+	 */
+	private class Plan
+	{
+		public final int[] tiers, from, to;
+		public final float[] fractions;
+		public final boolean[] uses;
+		
+		/**
+		 * Ctor.
+		 * 
+		 * @param numBands The number of bands. Must be > 0
+		 */
+		public Plan(int numBands)
+		{
+			int num = _sizes.length;
+			double ratio = Math.pow((_sampleRate / 2) / MIN_FREQUENCY, 1.0 / numBands);
+			
+			tiers = new int[numBands];
+			from = new int[numBands];
+			to = new int[numBands];
+			fractions = new float[numBands];
+			uses = new boolean[num];
+			
+			for(int b = 0; b < numBands; b++) {
+				double lo = MIN_FREQUENCY * Math.pow(ratio, b);
+				double hi = lo * ratio;
+				
+				// the shortest fft that still resolves the band, the longest one otherwise
+				int tier = 0;
+				
+				for(int t = num - 1; t >= 0; t--) {
+					if(_sampleRate / _sizes[t] <= hi - lo) {
+						tier = t;
+						break;
+					}
+				}
+				
+				double bw = _sampleRate / _sizes[tier];
+				int last = _sizes[tier] / 2;
+				
+				tiers[b] = tier;
+				uses[tier] = true;
+				from[b] = (int) Math.ceil(lo / bw);
+				to[b] = Math.min(last, (int) Math.floor(hi / bw));
+				
+				if(from[b] > to[b]) {
+					// no bin inside the band, interpolate at its center
+					double position = Math.min(last - 1, Math.sqrt(lo * hi) / bw);
+					to[b] = (int) Math.floor(position);
+					fractions[b] = (float) (position - to[b]);
+					from[b] = to[b] + 1;
+				}
+			}
+		}
+	}
+}
@@ -22,6 +22,8 @@ package pav.lib.visualizer;
 import java.io.Serializable;
 import pav.lib.PAVException;
 import pav.lib.Util;
+import pav.lib.frame.AnalysisPlan;
+import pav.lib.frame.BandEnvelope;
 import pav.lib.frame.Frame;
 import pav.lib.frame.TransformResult;
 import processing.core.PApplet;
@@ -62,8 +64,10 @@ public class Boxes extends VisualizerAbstract
 	
 	private float[] _filter;
 	private int _maxHeight, _edgeColor, _quantizationSteps ;
+	private boolean _multiResolution;
 	private float _rotateAngle, _rotateSpeed;
 	private transient float _vMax;
+	private transient BandEnvelope _envelope;
 	private transient float[] _intensities;
 	private transient GLGraphicsOffScreen _buffer;
 
@@ -315,6 +319,19 @@ public class Boxes extends VisualizerAbstract
 		_maxHeight = height;
 	}
 	
+	/**
+	 * Whether to use the bands of the multi resolution spectrum instead of the mel spectrum,
+	 * see Frame.Transform.multiResolution(). These bands resolve low frequencies better and
+	 * react faster to high frequencies.
+	 * 
+	 * @param multiResolution Whether to use the multi resolution spectrum
+	 */
+	public void useMultiResolution(boolean multiResolution)
+	{
+		_multiResolution = multiResolution;
+		_envelope = null;
+	}
+	
 	/**
 	 * Sets the number of steps to use for quantization of the spectrum values or disables quantization.
 	 * 
@@ -338,6 +355,7 @@ public class Boxes extends VisualizerAbstract
 	public void filter(float[] filter)
 	{
 		_filter = filter;
+		_envelope = null;
 	}
 	
 	/**
@@ -395,9 +413,9 @@ public class Boxes extends VisualizerAbstract
 			setCamera(PApplet.cos(_rotateAngle) * _gridSizeZ, p.height / -5, PApplet.sin(_rotateAngle) * _gridSizeZ, 0, 0, 0, 0, 1, 0);
 		}
 		
-		TransformResult spectrum = Frame.Transform.melSpectrum(_boxes.length);
+		int num = _boxes.length;
+		TransformResult spectrum = _multiResolution ? Frame.Transform.multiResolution(num) : Frame.Transform.melSpectrum(num);
 		_intensities = spectrum.frame();
-		float vMax = spectrum.max();
 
 		if(_filter != null) {
 			int len = _filter.length;
@@ -405,15 +423,18 @@ public class Boxes extends VisualizerAbstract
 			
 			for(int i = 0; i < len; i++) {
 				_intensities[i] = _intensities[i] * _filter[i];
-				
-				if(_intensities[i] > vMax) {
-					vMax = _intensities[i];
-				}
 			}
+			
+			// the shared envelope does not know about the filter
+			if(_envelope == null || _envelope.numBands() != _intensities.length) {
+				_envelope = new BandEnvelope(_intensities.length);
+			}
+			
+			_envelope.update(_intensities, 0);
+			_vMax = _envelope.max();
 		}
-		
-		if(vMax > _vMax) {
-			_vMax = vMax;
+		else {
+			_vMax = _multiResolution ? Frame.Envelope.multiResolution(num, 0, num - 1).max() : Frame.Envelope.melSpectrum(num).max();
 		}
 		
 		if(_quantizationSteps > 0) {
@@ -434,6 +455,17 @@ public class Boxes extends VisualizerAbstract
 		p.image(_buffer.getTexture(), area[0], area[1]);
 	}
 	
+	@Override
+	public void require(AnalysisPlan plan)
+	{
+		if(_multiResolution) {
+			plan.requireMultiResolution(_boxes.length);
+		}
+		else {
+			plan.requireMelSpectrum(_boxes.length);
+		}
+	}
+	
 	@Override
 	public void drawTo(PApplet applet) throws PAVException
 	{
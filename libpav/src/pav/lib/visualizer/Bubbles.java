@@ -24,6 +24,7 @@ import java.util.LinkedList;
 import java.util.Random;
 import pav.lib.PAVException;
 import pav.lib.ShaderManager;
+import pav.lib.frame.AnalysisPlan;
 import pav.lib.frame.Frame;
 import processing.core.PApplet;
 import codeanticode.glgraphics.GLGraphics;
@@ -38,6 +39,16 @@ import codeanticode.glgraphics.GLTextureFilter;
  */
 public class Bubbles extends VisualizerAbstract
 {	
+	/**
+	 * Spawn bubbles based on the sound intensity.
+	 */
+	public static final int MODE_INTENSITY = 1;
+	
+	/**
+	 * Spawn bubbles based on the perceived loudness.
+	 */
+	public static final int MODE_LOUDNESS = 2;
+	
 	private static final long serialVersionUID = 4343458995928287150L;
 	
 	private Generator _generator;
@@ -48,6 +59,7 @@ public class Bubbles extends VisualizerAbstract
 	private final Random _random;
 	private final LinkedList<Bubble> _bubbles, _finished;
 	
+	private int _mode;
 	private boolean _useBloom;
 	private final LinkedList<Integer> _spawnHistory;
 	private int _spawnSum, _spawnHistorySize, _width, _height;
@@ -67,6 +79,7 @@ public class Bubbles extends VisualizerAbstract
 		_finished = new LinkedList<Bubble>();
 		_generator = new Intensity();
 		
+		setMode(MODE_INTENSITY);
 		useBloom(true);
 		setDarkenFactor(13);
 		setBubbleSize(0.02f, 0.06f);
@@ -100,6 +113,17 @@ public class Bubbles extends VisualizerAbstract
 		_rMax = max;
 	}
 	
+	/**
+	 * Sets what the bubbles are based on. Must be a valid mode according to the MODE_ constants
+	 * of this class. Default is MODE_INTENSITY.
+	 * 
+	 * @param mode The mode to use. Must be valid (see MODE_ constants)
+	 */
+	public void setMode(int mode)
+	{
+		_mode = mode;
+	}
+	
 	/**
 	 * Whether to use a bloom postprocessing filter.
 	 * 
@@ -221,6 +245,12 @@ public class Bubbles extends VisualizerAbstract
 		}
 	}
 	
+	@Override
+	public void require(AnalysisPlan plan)
+	{
+		plan.require((_mode == MODE_LOUDNESS) ? AnalysisPlan.LOUDNESS : AnalysisPlan.RMS);
+	}
+	
 	@Override
 	public String toString()
 	{
@@ -291,7 +321,7 @@ public class Bubbles extends VisualizerAbstract
 	}
 	
 	/**
-	 * Generates bubbles based on the intensity of the playing sound.
+	 * Generates bubbles based on the intensity or the loudness of the playing sound.
 	 * 
 	 * @author christopher
 	 */
@@ -332,7 +362,7 @@ public class Bubbles extends VisualizerAbstract
 				_updateLuts();
 			}
 			
-			float rms = Frame.Descriptor.rms();
+			float rms = (_mode == MODE_LOUDNESS) ? Frame.Descriptor.loudness() : Frame.Descriptor.rms();
 			
 			if(rms < 0.001) return 0;
 			
@@ -21,6 +21,8 @@ package pav.lib.visualizer;
 
 import pav.lib.PAVException;
 import pav.lib.Util;
+import pav.lib.frame.AnalysisPlan;
+import pav.lib.frame.BandEnvelope;
 import pav.lib.frame.Frame;
 import pav.lib.frame.TransformResult;
 import processing.core.PApplet;
@@ -35,6 +37,7 @@ public class MelSpectrum extends VisualizerAbstract
 	private static final long serialVersionUID = 5375994108922066833L;
 
 	private transient float _vMax;
+	private transient BandEnvelope _envelope;
 	
 	private int _borderColor, _numBands, _quantizationSteps;
 	private float[] _filter;
@@ -55,7 +58,7 @@ public class MelSpectrum extends VisualizerAbstract
 	{
 		TransformResult spectrum = Frame.Transform.melSpectrum(_numBands);
 		float[] freq = spectrum.frame();
-		float vMax = spectrum.max();
+		BandEnvelope envelope;
 		
 		if(_filter != null) {
 			int len = _filter.length;
@@ -63,20 +66,24 @@ public class MelSpectrum extends VisualizerAbstract
 			
 			for(int i = 0; i < len; i++) {
 				freq[i] = freq[i] * _filter[i];
-				
-				if(freq[i] > vMax) {
-					vMax = freq[i];
-				}
 			}
+			
+			// the shared envelope does not know about the filter
+			if(_envelope == null || _envelope.numBands() != freq.length) {
+				_envelope = new BandEnvelope(freq.length);
+			}
+			
+			_envelope.update(freq, 0);
+			envelope = _envelope;
 		}
-		
-		if(! _rememberMax) {
-			_vMax = 0;
+		else {
+			envelope = Frame.Envelope.melSpectrum(_numBands);
 		}
 		
 		boolean quantize = _quantizationSteps > 0;
+		float vMax = _rememberMax ? envelope.max() : envelope.frameMax();
 		
-		if(vMax > _vMax) {
+		if(vMax != _vMax) {
 			_vMax = vMax;
 			
 			if(quantize) {
@@ -107,6 +114,12 @@ public class MelSpectrum extends VisualizerAbstract
 		}
 	}
 	
+	@Override
+	public void require(AnalysisPlan plan)
+	{
+		plan.requireMelSpectrum(_numBands);
+	}
+	
 	/**
 	 * Sets the number of mel bands to compute. Must be > 0.
 	 * 
@@ -150,12 +163,14 @@ public class MelSpectrum extends VisualizerAbstract
 	public void filter(float[] filter)
 	{
 		_filter = filter;
+		_envelope = null;
 		_vMax = 0;
 	}
 	
 	/**
 	 * Before drawing the maximum intensity of the spectrum data is calculated so that the output
-	 * can be scaled properly. This method sets whether the maximum will be saved and reused.
+	 * can be scaled properly. This method sets whether the maximum will be saved and reused. A saved
+	 * maximum slowly decays, so that quiet passages are scaled up again.
 	 * 
 	 * @param remember Whether or not to remember the max intensity
 	 */
@@ -19,7 +19,10 @@
 
 package pav.lib.visualizer;
 
+import pav.lib.GeometryBatch;
 import pav.lib.PAVException;
+import pav.lib.frame.AnalysisPlan;
+import pav.lib.frame.BandEnvelope;
 import pav.lib.frame.Frame;
 import processing.core.PApplet;
 
@@ -51,18 +54,16 @@ public class Phasor extends VisualizerAbstract
 	
 	private int _mode;
 	private float _strokeWeight;
-	private transient float _vMin, _vMax, _dMin, _dMax;
+	private transient float[] _extremes;
+	private transient BandEnvelope _envelope;
+	private transient float[] _frameDeriv;
+	private transient GeometryBatch _batch;
 	
 	/**
 	 * Ctor.
 	 */
 	public Phasor()
 	{
-		_vMin = Float.MAX_VALUE;
-		_vMax = Float.MIN_VALUE;
-		_dMin = Float.MAX_VALUE;
-		_dMax = Float.MIN_VALUE;
-		
 		setMode(MODE_CURVES);
 		setStrokeWeight(1);
 		setColor(0xFFFF0000, 0xFFFFFF00, PApplet.RGB);
@@ -71,15 +72,18 @@ public class Phasor extends VisualizerAbstract
 	@Override
 	public void process() throws PAVException
 	{
-		p.strokeWeight(_strokeWeight);
-		
 		float[] frame = Frame.samples();
 		int len = frame.length;
 		int len1 = len - 1;
-		float[] frameDeriv = new float[len];
 		float dMin = Float.MAX_VALUE;
 		float dMax = Float.MIN_VALUE;
 		
+		if(_frameDeriv == null || _frameDeriv.length != len) {
+			_frameDeriv = new float[len];
+		}
+		
+		float[] frameDeriv = _frameDeriv;
+		
 		for(int i = 1; i < len1; i++) {
 			float v = frame[i + 1] - frame[i - 1];
 			frameDeriv[i] = v;
@@ -98,45 +102,65 @@ public class Phasor extends VisualizerAbstract
 			if(v < vMin) vMin = v;
 		}
 		
-		if(dMax > _dMax) _dMax = dMax;
-		if(vMax > _vMax) _vMax = vMax;
-		if(dMin < _dMin) _dMin = dMin;
-		if(vMin < _vMin) _vMin = vMin;
+		if(_envelope == null) {
+			_envelope = new BandEnvelope(4);
+			_extremes = new float[4];
+		}
+		
+		// track the extremes as magnitudes, so that they decay towards the center
+		float[] extremes = _extremes;
+		extremes[0] = vMax;
+		extremes[1] = - vMin;
+		extremes[2] = dMax;
+		extremes[3] = - dMin;
+		
+		_envelope.update(extremes, 0);
+		float[] gains = _envelope.gains();
 		
 		float[] area = getArea();
 		float width2 = (area[2] - area[0]) / 2f;
 		float height2 = (area[3] - area[1]) / 2f;
+		float cx = area[0] + width2;
+		float cy = area[1] + height2;
 		
-		cm.setRange(0, len - 1);
-
-		if(_mode != MODE_DOTS) {
-			p.noFill();
-			p.beginShape();
+		float sdMin = - width2 * gains[3];
+		float sdMax = width2 * gains[2];
+		float svMin = - height2 * gains[1];
+		float svMax = height2 * gains[0];
+		
+		if(_batch == null) {
+			_batch = new GeometryBatch(p);
 		}
 		
-		for(int i = 1; i < len1; i++) {
+		_batch.begin((_mode == MODE_DOTS) ? GeometryBatch.POINTS : GeometryBatch.LINE_STRIP, len - 2);
+		_batch.setStrokeWeight(_strokeWeight);
+		
+		float[] vertices = _batch.vertices();
+		int[] colors = _batch.colors();
+		
+		cm.setRange(0, len - 1);
+		
+		for(int i = 1, k = 0; i < len1; i++, k += 2) {
 			float x = frameDeriv[i];
 			float y = frame[i];
 			
-			x = (x < 0) ? PApplet.map(x, _dMin, 0, - width2, 0) : PApplet.map(x, 0, _dMax, 0, width2);
-			y = (y < 0) ? PApplet.map(y, _vMin, 0, height2, 0) : PApplet.map(y, 0, _vMax, 0, - height2);
-			
-			p.stroke(cm.map(i));
-			
-			if(_mode == MODE_LINES) {
-				p.curveVertex(area[0] + width2 + x, area[1] + height2 + y);
-			}
-			else if(_mode == MODE_CURVES) {
-				p.curveVertex(area[0] + width2 + x, area[1] + height2 + y);
-			}
-			else {
-				p.point(area[0] + width2 + x, area[1] + height2 + y);
-			}
+			vertices[k] = cx + ((x < 0) ? - x * sdMin : x * sdMax);
+			vertices[k + 1] = cy + ((y < 0) ? y * svMin : - y * svMax);
+			colors[i - 1] = cm.map(i);
 		}
 		
-		if(_mode != MODE_DOTS) {
-			p.endShape();
+		if(_mode == MODE_CURVES) {
+			_batch.drawCurve(p.g);
 		}
+		else {
+			_batch.draw();
+		}
+	}
+	
+	@Override
+	public void require(AnalysisPlan plan)
+	{
+		// the samples only
 	}
 	
 	/**
@@ -176,5 +200,19 @@ public class Phasor extends VisualizerAbstract
 	}
 	
 	@Override
-	public void dispose() { }
+	public void drawTo(PApplet applet) throws PAVException
+	{
+		super.drawTo(applet);
+		
+		dispose();
+	}
+	
+	@Override
+	public void dispose()
+	{
+		if(_batch != null) {
+			_batch.dispose();
+			_batch = null;
+		}
+	}
 }
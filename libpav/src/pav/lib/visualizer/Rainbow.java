@@ -21,6 +21,7 @@ package pav.lib.visualizer;
 
 import pav.lib.PAVException;
 import pav.lib.StreamingBuffer;
+import pav.lib.frame.AnalysisPlan;
 import pav.lib.frame.Frame;
 import processing.core.PApplet;
 
@@ -28,7 +29,8 @@ import processing.core.PApplet;
  * Draws colored stripes based on the frequency or the intenstiy of the playing music.
  * In frequency mode (MODE_FREQUENCY) the colors are chosen based on the frequency distribution
  * of the sound (spectral centroid). In intensity mode (MODE_INTENSITY) the colors are based
- * on the sound intensity (rms).
+ * on the sound intensity (rms). In loudness mode (MODE_LOUDNESS) they are based on the
+ * perceived loudness, which follows the music more smoothly than the intensity.
  * 
  * @author christopher
  */
@@ -44,6 +46,11 @@ public class Rainbow extends VisualizerAbstract
 	 */
 	public static final int MODE_INTENSITY = 2;
 	
+	/**
+	 * Choose colors based on the perceived loudness.
+	 */
+	public static final int MODE_LOUDNESS = 3;
+	
 	private static final long serialVersionUID = 3758005144794379244L;
 
 	private transient StreamingBuffer _buffer;
@@ -75,6 +82,9 @@ public class Rainbow extends VisualizerAbstract
 		else if(_mode == MODE_INTENSITY) {
 			v = Frame.Descriptor.rms();
 		}
+		else if(_mode == MODE_LOUDNESS) {
+			v = Frame.Descriptor.loudness();
+		}
 
 		float[] area = getArea();
 		int width = (int) (area[2] - area[0]);
@@ -109,10 +119,24 @@ public class Rainbow extends VisualizerAbstract
 		_buffer.draw((int) area[0], (int) area[1], width, height);
 	}
 	
+	@Override
+	public void require(AnalysisPlan plan)
+	{
+		if(_mode == MODE_FREQUENCY) {
+			plan.require(AnalysisPlan.SPECTRAL_CENTROID);
+		}
+		else if(_mode == MODE_INTENSITY) {
+			plan.require(AnalysisPlan.RMS);
+		}
+		else if(_mode == MODE_LOUDNESS) {
+			plan.require(AnalysisPlan.LOUDNESS);
+		}
+	}
+	
 	/**
 	 * Sets the range to map colors to. For instance, if set to 500, 5000 (the default) the color
 	 * mapping will be done based on values between these values, any values lower than 500 will
-	 * be mapped to 500, and higher than 5000 to 5000. In intensity mode values are between 0 and 1.
+	 * be mapped to 500, and higher than 5000 to 5000. In intensity and loudness mode values are between 0 and 1.
 	 * 
 	 * @param min The min value to use for color mapping. Must be >= 0
 	 * @param max The max value to use for color mapping. Must be > min
@@ -151,7 +175,7 @@ public class Rainbow extends VisualizerAbstract
 		if(_mode == MODE_FREQUENCY) {
 			setRange(500, 5000);
 		}
-		else if(_mode == MODE_INTENSITY) {
+		else if(_mode == MODE_INTENSITY || _mode == MODE_LOUDNESS) {
 			setAutoRange();
 		}
 	}
@@ -164,6 +188,8 @@ public class Rainbow extends VisualizerAbstract
 				return "Rainbow (frequency mode)";
 			case MODE_INTENSITY :
 				return "Rainbow (intensity mode)";
+			case MODE_LOUDNESS :
+				return "Rainbow (loudness mode)";
 			default :
 				return "Rainbow";
 		}
@@ -19,8 +19,12 @@
 
 package pav.lib.visualizer;
 
+import pav.lib.BandLayout;
 import pav.lib.PAVException;
+import pav.lib.SpectrumHistory;
 import pav.lib.StreamingBuffer;
+import pav.lib.frame.AnalysisPlan;
+import pav.lib.frame.BandEnvelope;
 import pav.lib.frame.Frame;
 import pav.lib.frame.TransformResult;
 import processing.core.PApplet;
@@ -34,9 +38,21 @@ public class Spectogram extends VisualizerAbstract
 {
 	private static final long serialVersionUID = 3765068172167986718L;
 	
-	private transient float _vMax;
+	/**
+	 * The number of zoom levels, see setZoom().
+	 */
+	public static final int NUM_ZOOM_LEVELS = 8;
+	
+	private static final float HISTORY_CEILING = 5;
+	
+	private transient int[] _colors;
+	private transient float[] _column;
+	private transient boolean _refill;
 	private transient StreamingBuffer _buffer;
+	private transient SpectrumHistory _history;
+	private transient BandLayout _layout;
 	
+	private int _zoom, _historySize;
 	private boolean _rememberMax, _highOnTop;
 	private Integer _minFrequency, _maxFrequency;
 	
@@ -47,6 +63,7 @@ public class Spectogram extends VisualizerAbstract
 	{
 		rememberMax(true);
 		noCutoffFrequencies();
+		setHistorySize(16 * 1024 * 1024);
 		setHighOnTop(false);
 		setColor(new float[] { 0, 0.1f, 0.5f, 1 }, new int[] { 0x00000000, 0xFF0000FF, 0xFF33FF33, 0xFFFF0000 }, PApplet.RGB);
 	}
@@ -54,50 +71,32 @@ public class Spectogram extends VisualizerAbstract
 	@Override
 	public void process() throws PAVException
 	{
-		float max;
-		int from, to;
-		
 		TransformResult spectrum = Frame.Transform.spectrum();
 		float[] bands = spectrum.frame();
 		
-		if(_minFrequency == null || _maxFrequency == null) {
-			max = spectrum.max();
-			from = 0;
-			to = bands.length - 1;
-		}
-		else {
-			max = 0;
-			from = Frame.Transform.Util.frequencyToBand(_minFrequency);
-			to = Frame.Transform.Util.frequencyToBand(_maxFrequency);
-			
-			float sMax = spectrum.max();
-			
-			for(int i = from; i <= to; i++) {
-				float v = bands[i];
-				
-				if(v == sMax) {
-					max = v;
-					break;
-				}
-				
-				if(v > max) {
-					max = v;
-				}
-			}
+		if(_layout == null) {
+			_layout = new BandLayout();
 		}
 		
+		_layout.setRange(bands.length, 0, _minFrequency, _maxFrequency);
+		
+		int from = _layout.from();
+		int to = _layout.to();
+		
+		BandEnvelope envelope = Frame.Envelope.spectrum(from, to);
+		float max = _rememberMax ? envelope.max() : envelope.frameMax();
+		
 		int numBands = (to - from) + 1;
 		
-		if(_rememberMax) {
-			if(_vMax > max) {
-				max = _vMax;
-			}
-			else {
-				_vMax = max;
-			}
+		cm.setRange(0, max);
+		
+		if(_history == null || _history.numBands() != bands.length) {
+			_history = new SpectrumHistory(bands.length, _historySize, NUM_ZOOM_LEVELS, HISTORY_CEILING);
+			_column = new float[bands.length];
+			_refill = true;
 		}
 		
-		cm.setRange(0, max);
+		_history.add(bands);
 		
 		float[] area = getArea();
 		int width = (int) Math.floor(area[2] - area[0]);
@@ -109,23 +108,66 @@ public class Spectogram extends VisualizerAbstract
 			}
 			
 			_buffer = new StreamingBuffer(p, width, numBands);
+			_refill = true;
 		}
 		
-		cm.setRange(0, _vMax);
-		int[] colors = new int[numBands];
+		if(_colors == null || _colors.length != numBands) {
+			_colors = new int[numBands];
+		}
 		
-		for(int i = from; i <= to; i++) {
-			colors[i - from] = cm.map(bands[i]);
+		if(_refill) {
+			_fill(from, numBands);
+			_refill = false;
+		}
+		else if(_zoom == 0) {
+			cm.mapInto(bands, from, numBands, _colors, 0);
+			_buffer.add(_colors, ! _highOnTop);
+		}
+		else if(_history.updated(_level())) {
+			_history.get(_level(), 0, _column);
+			cm.mapInto(_column, from, numBands, _colors, 0);
+			_buffer.add(_colors, ! _highOnTop);
 		}
 		
-		_buffer.add(colors, ! _highOnTop);
 		_buffer.draw((int) area[0], (int) area[1], width, height);
 	}
-			
+	
+	@Override
+	public void require(AnalysisPlan plan)
+	{
+		plan.require(AnalysisPlan.SPECTRUM);
+	}
+	
+	/**
+	 * Sets the zoom level. At level n every column of the spectogram represents the
+	 * maximum of 2^n frames. Level 0 (the default) shows every frame. Changing the zoom
+	 * level redraws the spectogram from the stored history.
+	 * 
+	 * @param level The zoom level. Must be >= 0 and < NUM_ZOOM_LEVELS
+	 */
+	public void setZoom(int level)
+	{
+		_zoom = PApplet.constrain(level, 0, NUM_ZOOM_LEVELS - 1);
+		_refill = true;
+	}
+	
+	/**
+	 * Sets the maximum amount of memory the spectogram history may use. The history is kept
+	 * outside of the Java heap. Calling this method discards the current history.
+	 * 
+	 * @param bytes The history size in bytes. Must be > 0
+	 */
+	public void setHistorySize(int bytes)
+	{
+		_historySize = bytes;
+		_history = null;
+	}
+	
 	/**
 	 * Before drawing the maximum intensity of the frequency data is calculated so that the output
 	 * can be scaled properly. By default this information is stored and reused if the maximum of the
-	 * current frame is lower. if set to false, a new maximum will be calculated for every new frame.
+	 * current frame is lower, slowly decaying so that quiet passages are scaled up again. If set to
+	 * false, a new maximum will be calculated for every new frame.
 	 * 
 	 * @param remember Whether or not to remember the max intensity
 	 */
@@ -167,10 +209,31 @@ public class Spectogram extends VisualizerAbstract
 		_highOnTop = onTop;
 	}
 
+	private void _fill(int from, int numBands) throws PAVException
+	{
+		// the buffer might still show the columns of another zoom level
+		_buffer.clear();
+		
+		int level = _level();
+		int num = Math.min(_buffer.getWidth(), _history.numColumns(level));
+		
+		for(int age = num - 1; age >= 0; age--) {
+			_history.get(level, age, _column);
+			cm.mapInto(_column, from, numBands, _colors, 0);
+			_buffer.add(_colors, ! _highOnTop);
+		}
+	}
+
+	private int _level()
+	{
+		// a small history size might not allow for all zoom levels
+		return Math.min(_zoom, _history.numLevels() - 1);
+	}
+	
 	@Override
 	public String toString()
 	{
-		return "Spectogram";
+		return (_zoom == 0) ? "Spectogram" : "Spectogram (zoom " + _zoom + ")";
 	}
 	
 	@Override
@@ -19,7 +19,10 @@
 
 package pav.lib.visualizer;
 
+import pav.lib.BandLayout;
 import pav.lib.PAVException;
+import pav.lib.frame.AnalysisPlan;
+import pav.lib.frame.BandEnvelope;
 import pav.lib.frame.Frame;
 import pav.lib.frame.TransformResult;
 import processing.core.PApplet;
@@ -48,9 +51,10 @@ public class Spectrum extends VisualizerAbstract
 	 */
 	public static final int MODE_SHAPE = 3;
 	
-	private transient float _vMax;
+	private transient int[] _colors;
+	private transient BandLayout _layout;
 	
-	private int _mode;
+	private int _mode, _multiResolution;
 	private float _strokeWeight;
 	private boolean _rememberMax;
 	private Integer _minFrequency, _maxFrequency;
@@ -72,62 +76,48 @@ public class Spectrum extends VisualizerAbstract
 	{	
 		p.strokeWeight(_strokeWeight);
 		
-		float max;
-		int from, to;
-		
-		TransformResult spectrum = Frame.Transform.spectrum();
+		boolean multi = _multiResolution > 0;
+		TransformResult spectrum = multi ? Frame.Transform.multiResolution(_multiResolution) : Frame.Transform.spectrum();
 		float[] bands = spectrum.frame();
 		
-		if(_minFrequency == null || _maxFrequency == null) {
-			max = spectrum.max();
-			from = 0;
-			to = bands.length - 1;
-		}
-		else {
-			max = 0;
-			from = Frame.Transform.Util.frequencyToBand(_minFrequency);
-			to = Frame.Transform.Util.frequencyToBand(_maxFrequency);
-			
-			float sMax = spectrum.max();
-			
-			for(int i = from; i <= to; i++) {
-				float v = bands[i];
-				
-				if(v == sMax) {
-					max = v;
-					break;
-				}
-				
-				if(v > max) {
-					max = v;
-				}
-			}
+		if(_layout == null) {
+			_layout = new BandLayout();
 		}
 		
-		if(_rememberMax) {
-			if(_vMax > max) {
-				max = _vMax;
-			}
-			else {
-				_vMax = max;
-			}
-		}
+		_layout.setRange(bands.length, _multiResolution, _minFrequency, _maxFrequency);
+		
+		int from = _layout.from();
+		int to = _layout.to();
+		
+		BandEnvelope envelope = multi ? Frame.Envelope.multiResolution(_multiResolution, from, to) : Frame.Envelope.spectrum(from, to);
+		float max = _rememberMax ? envelope.max() : envelope.frameMax();
 		
 		cm.setRange(0, max);
 		
 		float[] area = getArea();
+		_layout.setArea(area[0], area[2]);
+		
+		int num = _layout.numColumns();
+		float[] values = _layout.columns(bands);
+		float[] xs = _layout.xs();
+		
+		if(_colors == null || _colors.length < num) {
+			_colors = new int[num];
+		}
+		
+		int[] colors = _colors;
+		cm.mapInto(values, 0, num, colors, 0);
 		
 		if(_mode == MODE_SHAPE) {
 			p.noFill();
 			p.beginShape();
 		}
 		
-		for(int i = from; i <= to; i++) {
-			float v = bands[i];
-			float x = PApplet.map(i, from, to, area[0], area[2]);
-			float y = PApplet.map(v, 0, max, area[3], area[1]);
+		for(int i = 0; i < num; i++) {
+			float x = xs[i];
+			float y = PApplet.map(values[i], 0, max, area[3], area[1]);
 			
-			p.stroke(cm.map(v));
+			p.stroke(colors[i]);
 			
 			switch(_mode) {
 				case MODE_BINS :
@@ -147,6 +137,17 @@ public class Spectrum extends VisualizerAbstract
 		}
 	}
 	
+	@Override
+	public void require(AnalysisPlan plan)
+	{
+		if(_multiResolution > 0) {
+			plan.requireMultiResolution(_multiResolution);
+		}
+		else {
+			plan.require(AnalysisPlan.SPECTRUM);
+		}
+	}
+	
 	/**
 	 * Sets the stroke weight to use when drawing.
 	 * 
@@ -180,6 +181,26 @@ public class Spectrum extends VisualizerAbstract
 		_maxFrequency = null;
 	}
 	
+	/**
+	 * Tells the visualizer to show logarithmically spaced bands of the multi resolution
+	 * spectrum instead of the FFT bins, see Frame.Transform.multiResolution(). These bands
+	 * resolve low frequencies better and react faster to high frequencies.
+	 * 
+	 * @param numBands The number of bands to show. Must be > 0
+	 */
+	public void useMultiResolution(int numBands)
+	{
+		_multiResolution = numBands;
+	}
+	
+	/**
+	 * Tells the visualizer to show the FFT bins (the default). See useMultiResolution().
+	 */
+	public void noMultiResolution()
+	{
+		_multiResolution = 0;
+	}
+	
 	/**
 	 * Sets the visualization mode. Must be a valid mode according
 	 * to the MODE_ constants of this class.
@@ -193,7 +214,8 @@ public class Spectrum extends VisualizerAbstract
 		
 	/**
 	 * Before drawing the maximum intensity of the frequency data is calculated so that the output
-	 * can be scaled properly. This method sets whether the maximum will be saved and reused.
+	 * can be scaled properly. This method sets whether the maximum will be saved and reused. A saved
+	 * maximum slowly decays, so that quiet passages are scaled up again.
 	 * 
 	 * @param remember Whether to remember the max intensity
 	 */
@@ -21,6 +21,7 @@ package pav.lib.visualizer;
 
 import java.io.Serializable;
 import pav.lib.PAVException;
+import pav.lib.frame.AnalysisPlan;
 import processing.core.PApplet;
 
 /**
@@ -60,6 +61,14 @@ public interface Visualizer extends Serializable
 	 */
 	void process() throws PAVException;
 	
+	/**
+	 * Adds the features of the frame process() will use to a plan, see AnalysisPlan.
+	 * Called before every call to process(), so the features may depend on the current settings.
+	 * 
+	 * @param plan The plan to add to. Must not be null
+	 */
+	void require(AnalysisPlan plan);
+	
 	/**
 	 * Sets the color to use when drawing this visualizer. How a visualizer uses the color
 	 * specified is not defined. It might not be used at all.
@@ -21,6 +21,7 @@ package pav.lib.visualizer;
 
 import pav.lib.ColorMapper;
 import pav.lib.PAVException;
+import pav.lib.frame.AnalysisPlan;
 import processing.core.PApplet;
 
 /**
@@ -90,6 +91,15 @@ public abstract class VisualizerAbstract implements Visualizer
 		p = applet;
 	}
 	
+	/**
+	 * Visualizers that do not override this method may use any feature.
+	 */
+	@Override
+	public void require(AnalysisPlan plan)
+	{
+		plan.requireUnknown();
+	}
+	
 	/**
 	 * Returns the area this visualizer may use. The area is specified by
 	 * and array containing 4 values:
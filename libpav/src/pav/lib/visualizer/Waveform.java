@@ -19,7 +19,9 @@
 
 package pav.lib.visualizer;
 
+import pav.lib.GeometryBatch;
 import pav.lib.PAVException;
+import pav.lib.frame.AnalysisPlan;
 import pav.lib.frame.Frame;
 import processing.core.PApplet;
 
@@ -50,6 +52,7 @@ public class Waveform extends VisualizerAbstract
 	private int _mode;
 	private float _strokeWeight;
 	private boolean _colorAbsolute;
+	private transient GeometryBatch _batch;
 	
 	/**
 	 * Ctor.
@@ -65,45 +68,60 @@ public class Waveform extends VisualizerAbstract
 	@Override
 	public void process() throws PAVException
 	{
-		p.strokeWeight(_strokeWeight);
-				
+		if(_batch == null) {
+			_batch = new GeometryBatch(p);
+		}
+		
 		float[] frame = Frame.samples();
 		float[] area = getArea();
 		int len = frame.length;
+		boolean bins = _mode == MODE_BINS;
 		
-		if(_mode == MODE_SHAPE) {
-			p.noFill();
-			p.beginShape();
+		switch(_mode) {
+			case MODE_BINS :
+				_batch.begin(GeometryBatch.LINES, len * 2);
+				break;
+			case MODE_DOTS :
+				_batch.begin(GeometryBatch.POINTS, len);
+				break;
+			default :
+				_batch.begin(GeometryBatch.LINE_STRIP, len);
+				break;
 		}
 		
-		for(int i = 0; i < len; i++) {
+		float[] vertices = _batch.vertices();
+		int[] colors = _batch.colors();
+		float dx = (area[2] - area[0]) / (len - 1);
+		float yCenter = (area[1] + area[3]) / 2;
+		float yScale = (area[3] - area[1]) / 2;
+		
+		for(int i = 0, j = 0; i < len; i++) {
 			float v = frame[i];
-			float x = PApplet.map(i, 0, len - 1, area[0], area[2]);
-			float y = PApplet.map(v, -1, 1, area[1], area[3]);
+			float x = area[0] + i * dx;
+			float y = yCenter + v * yScale;
+			int c = (_colorAbsolute && v < 0) ? cm.map(v * -1) : cm.map(v);
 			
-			if(_colorAbsolute && v < 0) {
-				p.stroke(cm.map(v * -1));
-			}
-			else {
-				p.stroke(cm.map(v));
-			}
-									
-			switch(_mode) {
-				case MODE_BINS :
-					p.line(x, (area[1] + area[3]) / 2, x, y);
-					break;
-				case MODE_DOTS :
-					p.point(x, y);
-					break;
-				case MODE_SHAPE :	
-					p.vertex(x, y);	
-					break;
+			if(bins) {
+				colors[j] = c;
+				vertices[j * 2] = x;
+				vertices[j * 2 + 1] = yCenter;
+				j++;
 			}
+			
+			colors[j] = c;
+			vertices[j * 2] = x;
+			vertices[j * 2 + 1] = y;
+			j++;
 		}
 		
-		if(_mode == MODE_SHAPE) {
-			p.endShape();
-		}
+		_batch.setStrokeWeight(_strokeWeight);
+		_batch.draw();
+	}
+	
+	@Override
+	public void require(AnalysisPlan plan)
+	{
+		// the samples only
 	}
 	
 	/**
@@ -160,5 +178,19 @@ public class Waveform extends VisualizerAbstract
 	}
 
 	@Override
-	public void dispose() { }
+	public void drawTo(PApplet applet) throws PAVException
+	{
+		super.drawTo(applet);
+		
+		dispose();
+	}
+
+	@Override
+	public void dispose()
+	{
+		if(_batch != null) {
+			_batch.dispose();
+			_batch = null;
+		}
+	}
 }
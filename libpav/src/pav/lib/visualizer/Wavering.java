@@ -19,8 +19,10 @@
 
 package pav.lib.visualizer;
 
+import pav.lib.GeometryBatch;
 import pav.lib.PAVException;
 import pav.lib.ShaderManager;
+import pav.lib.frame.AnalysisPlan;
 import pav.lib.frame.Frame;
 import processing.core.PApplet;
 import processing.core.PGraphics;
@@ -43,6 +45,8 @@ public class Wavering extends VisualizerAbstract
 	private float _rx, _ry, _dx, _dy;
 	private WaveringImpl _implementation;
 	private int _interpolate, _width, _height;
+	private transient float[] _cos, _sin, _values;
+	private transient GeometryBatch _batch;
 
 	/**
 	 * Ctor.
@@ -61,6 +65,8 @@ public class Wavering extends VisualizerAbstract
 	{
 		super.drawTo(applet);
 		
+		dispose();
+		
 		_implementation = (p.g instanceof GLGraphics) ? new Fancy() : new Simple();
 	}
 	
@@ -70,6 +76,12 @@ public class Wavering extends VisualizerAbstract
 		_implementation.process();
 	}
 	
+	@Override
+	public void require(AnalysisPlan plan)
+	{
+		// the samples only
+	}
+	
 	@Override
 	public String toString()
 	{
@@ -77,7 +89,17 @@ public class Wavering extends VisualizerAbstract
 	}
 
 	@Override
-	public void dispose() { }
+	public void dispose()
+	{
+		if(_implementation != null) {
+			_implementation.dispose();
+		}
+		
+		if(_batch != null) {
+			_batch.dispose();
+			_batch = null;
+		}
+	}
 	
 	/**
 	 * The number of samples to use when interpolating between start and end value of the frame.
@@ -161,20 +183,22 @@ public class Wavering extends VisualizerAbstract
 		
 	private void _drawRing(PGraphics target)
 	{
-		target.beginDraw();
-		target.noFill();
-		target.beginShape();
-		target.strokeWeight(_strokeWeight);
-				
 		float[] frame = Frame.samples();
 		float[] area = getArea();
 		int len = frame.length;
-		int len1 = len - 1;
 		float ox = (area[2] - area[0]) / 2;
 		float oy = (area[3] - area[1]) / 2;
 		
-		float as = -(PApplet.PI * 1.5f);
-		float ae = as + PApplet.TWO_PI;
+		if(_batch == null) {
+			_batch = new GeometryBatch(p);
+		}
+		
+		if(_cos == null || _cos.length != len) {
+			_initRingTables(len);
+			_values = new float[len];
+		}
+		
+		float[] values = _values;
 		
 		int j = (- len) + _interpolate;
 		float diff = 0, ddiff = 0;
@@ -189,7 +213,13 @@ public class Wavering extends VisualizerAbstract
 		float dx = _dx * ox;
 		float dy = _dy * oy;
 		
-		for(int i = 0; i < len; i++, j++) {
+		_batch.begin(GeometryBatch.LINE_LOOP, len);
+		_batch.setStrokeWeight(_strokeWeight);
+		
+		float[] vertices = _batch.vertices();
+		int[] colors = _batch.colors();
+		
+		for(int i = 0, k = 0; i < len; i++, j++, k += 2) {
 			float v = frame[i];
 			
 			if(_interpolate > 0) {
@@ -197,19 +227,34 @@ public class Wavering extends VisualizerAbstract
 				else if(j >= 0) v -= j * ddiff;
 			}
 			
-			float angle = PApplet.map(i, 0, len1, as, ae);
-			float x = ox + (rx + v * dx) * PApplet.cos(angle);
-			float y = oy + (ry + v * dy) * PApplet.sin(angle);
-			
-			if(_colorAbsolute && v < 0)	target.stroke(cm.map(v * -1)); else target.stroke(cm.map(v));
-						
-			target.vertex(x, y);
+			vertices[k] = ox + (rx + v * dx) * _cos[i];
+			vertices[k + 1] = oy + (ry + v * dy) * _sin[i];
+			values[i] = (_colorAbsolute && v < 0) ? v * -1 : v;
 		}
 		
-		target.endShape(PApplet.CLOSE);
+		cm.mapInto(values, 0, len, colors, 0);
+		
+		target.beginDraw();
+		_batch.draw(target);
 		target.endDraw();
 	}
 	
+	private void _initRingTables(int len)
+	{
+		float as = -(PApplet.PI * 1.5f);
+		float da = PApplet.TWO_PI / (len - 1);
+		
+		_cos = new float[len];
+		_sin = new float[len];
+		
+		for(int i = 0; i < len; i++) {
+			float angle = as + i * da;
+			
+			_cos[i] = (float) Math.cos(angle);
+			_sin[i] = (float) Math.sin(angle);
+		}
+	}
+	
 	/**
 	 * Wavering implementation.
 	 * 
@@ -0,0 +1,261 @@
+
+/*
+ * Processing Audio Visualization (PAV)
+ * Copyright (C) 2011  Christopher Pramerdorfer
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package pav.lib.frame;
+
+import java.util.Random;
+import processing.core.PApplet;
+import ddf.minim.analysis.FFT;
+
+/**
+ * Checks the analysis kernels of Frame against straightforward reference implementations
+ * on fixed inputs: the windowed samples, the FFT magnitudes, the spectrum, the mel spectrum,
+ * the RMS and the spectral centroid. The windowed samples and the spectra must be identical,
+ * values whose summation order differs may deviate by a small relative error.
+ * 
+ * Run with "ant verify" from the libpav directory. Exits with status 1 if a check fails.
+ * 
+ * @author christopher
+ */
+public class KernelCheck
+{
+	private static final float _tolerance = 1e-5f;
+	private static final int[] _numMelBands = { 1, 12, 40, 64 };
+	
+	private static int _numChecks, _numFailed;
+	
+	/**
+	 * Runs all checks.
+	 * 
+	 * @param args Unused
+	 */
+	public static void main(String[] args)
+	{
+		float[] rates = { 22050, 44100, 48000 };
+		int[] sizes = { 512, 1024, 2048 };
+		
+		for(float rate : rates) {
+			for(int size : sizes) {
+				Random random = new Random(size);
+				
+				_check("silence", new float[size], rate);
+				_check("impulse", _impulse(size), rate);
+				_check("sine", _sine(size, 1000, rate), rate);
+				_check("noise", _noise(size, random), rate);
+				
+				// the same sizes again, so that the cached tables are used as well
+				_check("noise", _noise(size, random), rate);
+			}
+		}
+		
+		System.out.println(_numChecks + " checks, " + _numFailed + " failed.");
+		
+		if(_numFailed > 0) {
+			System.exit(1);
+		}
+	}
+	
+	private static void _check(String name, float[] samples, float rate)
+	{
+		String what = name + " (" + samples.length + " samples, " + (int) rate + " Hz)";
+		
+		Frame.setSampleRate(rate);
+		Frame.update(samples);
+		
+		float[] windowed = _window(samples);
+		_exact(what + ": windowed samples", windowed, Frame.samplesWindowed());
+		
+		FFT fft = new FFT(samples.length, rate);
+		fft.noAverages();
+		fft.forward(windowed);
+		
+		float[] magnitudes = new float[fft.specSize()];
+		float[] spectrum = new float[magnitudes.length];
+		
+		for(int i = 0; i < magnitudes.length; i++) {
+			magnitudes[i] = fft.getBand(i);
+			spectrum[i] = (float) Math.log10(magnitudes[i] + 1);
+		}
+		
+		_exact(what + ": spectrum", spectrum, Frame.Transform.spectrum().frame());
+		
+		for(int numBands : _numMelBands) {
+			float[] mels = _mel(spectrum, rate, numBands);
+			_close(what + ": mel spectrum (" + numBands + " bands)", mels, Frame.Transform.melSpectrum(numBands).frame());
+		}
+		
+		_close(what + ": rms", new float[] { _rms(windowed) }, new float[] { Frame.Descriptor.rms() });
+		_close(what + ": spectral centroid", new float[] { _centroid(fft, magnitudes) }, new float[] { Frame.Descriptor.spectralCentroid() });
+	}
+	
+	private static float[] _window(float[] samples)
+	{
+		int len = samples.length;
+		int lenDec = len - 1;
+		float[] windowed = new float[len];
+		
+		for(int i = 0; i < len; i++) {
+			windowed[i] = samples[i] * (0.54f - 0.46f * (float) Math.cos(PApplet.TWO_PI * i / lenDec));
+		}
+		
+		return windowed;
+	}
+	
+	private static float[] _mel(float[] spectrum, float rate, int numBands)
+	{
+		float minMel = MelFilterBank.freqToMel(0);
+		float maxMel = MelFilterBank.freqToMel(Math.round(rate / 2));
+		float melDelta = (maxMel - minMel) / (numBands + 1);
+		
+		int l = spectrum.length;
+		float fDelta = (rate / 2) / l;
+		float[] mel = new float[l];
+		float[] out = new float[numBands];
+		
+		for(int i = 0; i < l; i++) {
+			mel[i] = MelFilterBank.freqToMel(i * fDelta + fDelta / 2);
+		}
+		
+		float low = minMel;
+		float center = minMel + melDelta;
+		float high = center + melDelta;
+		
+		for(int b = 0; b < numBands; b++) {
+			float vMax = 2 / (MelFilterBank.melToFreq(high) - MelFilterBank.melToFreq(low));
+			float intensity = 0;
+			
+			for(int i = 0; i < l; i++) {
+				float v = mel[i];
+				
+				if(v < low) continue;
+				if(v > high) break;
+				
+				float k = (v <= center) ? (center - v) / (center - low) : 1 - ((v - center) / (high - center));
+				intensity += spectrum[i] * k * vMax;
+			}
+			
+			out[b] = intensity;
+			
+			low += melDelta;
+			center += melDelta;
+			high += melDelta;
+		}
+		
+		return out;
+	}
+	
+	private static float _rms(float[] windowed)
+	{
+		float v = 0;
+		
+		for(int i = 0; i < windowed.length; i++) {
+			v += windowed[i] * windowed[i];
+		}
+		
+		return (float) Math.sqrt(v / windowed.length);
+	}
+	
+	private static float _centroid(FFT fft, float[] magnitudes)
+	{
+		float sum = 0, centroid = 0;
+		
+		for(int i = 0; i < magnitudes.length; i++) {
+			centroid += fft.indexToFreq(i) * magnitudes[i];
+			sum += magnitudes[i];
+		}
+		
+		return (sum > 0) ? centroid / sum : 0;
+	}
+	
+	private static void _exact(String what, float[] expected, float[] actual)
+	{
+		_numChecks++;
+		
+		if(expected.length != actual.length) {
+			_fail(what, "length " + actual.length + " instead of " + expected.length);
+			return;
+		}
+		
+		for(int i = 0; i < expected.length; i++) {
+			if(Float.floatToIntBits(expected[i]) != Float.floatToIntBits(actual[i])) {
+				_fail(what, "value " + i + " is " + actual[i] + " instead of " + expected[i]);
+				return;
+			}
+		}
+	}
+	
+	private static void _close(String what, float[] expected, float[] actual)
+	{
+		_numChecks++;
+		
+		if(expected.length != actual.length) {
+			_fail(what, "length " + actual.length + " instead of " + expected.length);
+			return;
+		}
+		
+		float max = 0;
+		
+		for(int i = 0; i < expected.length; i++) {
+			max = Math.max(max, Math.abs(expected[i]));
+		}
+		
+		for(int i = 0; i < expected.length; i++) {
+			// relative to the largest value, as single values may be close to zero
+			if(Math.abs(expected[i] - actual[i]) > _tolerance * max) {
+				_fail(what, "value " + i + " is " + actual[i] + " instead of " + expected[i]);
+				return;
+			}
+		}
+	}
+	
+	private static void _fail(String what, String message)
+	{
+		_numFailed++;
+		System.out.println("FAILED " + what + ": " + message);
+	}
+	
+	private static float[] _impulse(int size)
+	{
+		float[] samples = new float[size];
+		samples[size / 2] = 1;
+		
+		return samples;
+	}
+	
+	private static float[] _sine(int size, float frequency, float rate)
+	{
+		float[] samples = new float[size];
+		
+		for(int i = 0; i < size; i++) {
+			samples[i] = 0.5f * (float) Math.sin(PApplet.TWO_PI * frequency * i / rate);
+		}
+		
+		return samples;
+	}
+	
+	private static float[] _noise(int size, Random random)
+	{
+		float[] samples = new float[size];
+		
+		for(int i = 0; i < size; i++) {
+			samples[i] = random.nextFloat() * 2 - 1;
+		}
+		
+		return samples;
+	}
+}
@@ -28,6 +28,16 @@ import processing.core.PConstants;
  */
 final class Config
 {
+	/**
+	 * If PAV can not keep up, send the newest frame and drop all others.
+	 */
+	public static final String OVERLOAD_LATEST = "latest";
+	
+	/**
+	 * If PAV can not keep up, send all frames in order and drop the oldest ones once the queue is full.
+	 */
+	public static final String OVERLOAD_OLDEST = "oldest";
+	
 	/**
 	 * Whether to stream data to PAV.
 	 */
@@ -42,6 +52,39 @@ final class Config
 	 * The port PAV runs on.
 	 */
 	public static int pavPort = 2198;
+	
+	/**
+	 * If set, the audio data are written to a shared memory ring file at this path instead
+	 * of being sent over the network. PAV must use the ring audio source.
+	 */
+	public static String pavRing = null;
+	
+	/**
+	 * Whether to send the audio data over TCP instead of UDP. PAV must use the tcp audio source.
+	 */
+	public static boolean pavTcp = false;
+	
+	/**
+	 * Whether to compress the audio data sent to PAV. Compression is lossless and
+	 * requires a recent version of PAV.
+	 */
+	public static boolean compress = false;
+	
+	/**
+	 * What to do with frames if PAV can not keep up, one of the OVERLOAD constants.
+	 */
+	public static String overloadPolicy = OVERLOAD_LATEST;
+	
+	/**
+	 * The network interface to send multicast packets from, or null to let the system decide.
+	 * Only used if pavHost is a multicast group.
+	 */
+	public static String multicastInterface = null;
+	
+	/**
+	 * The time to live of multicast packets. Only used if pavHost is a multicast group.
+	 */
+	public static int multicastTtl = 1;
 		
 	/**
 	 * The frame size, i.e., the number of samples per frame. Must be 512, 1024 or 2048.
@@ -65,6 +65,12 @@ final class Main
 		options.addOption("nopav", false, "Do not try to send audio data to PAV.");
 		options.addOption("pavhost", true, "The host PAV is running on.");
 		options.addOption("pavport", true, "The port PAV is running on.");
+		options.addOption("pavring", true, "Write audio data to this shared memory file instead of sending it to PAV.");
+		options.addOption("pavtcp", false, "Send audio data to PAV over TCP.");
+		options.addOption("compress", false, "Compress the audio data sent to PAV.");
+		options.addOption("pavoverload", true, "What to do if PAV can not keep up (latest or oldest).");
+		options.addOption("pavinterface", true, "The network interface to send multicast packets from.");
+		options.addOption("pavttl", true, "The time to live of multicast packets.");
 		options.addOption("renderer", true, "The Processing render mode to use.");
 		options.addOption("framesize", true, "The size of the audio frames. Must be 512, 1024 or 2048.");
 		options.addOption("width", true, "The player width.");
@@ -163,6 +169,51 @@ final class Main
 					Console.out("No PAV port specified, using " + Config.pavPort + ".");
 				}
 				
+				if(cmd.hasOption("pavring")) {
+					Config.pavRing = cmd.getOptionValue("pavring");
+				}
+				
+				if(cmd.hasOption("pavtcp")) {
+					Config.pavTcp = true;
+				}
+				
+				if(cmd.hasOption("compress")) {
+					Config.compress = true;
+				}
+				
+				if(cmd.hasOption("pavoverload")) {
+					String option = cmd.getOptionValue("pavoverload");
+					
+					if(option.equals(Config.OVERLOAD_LATEST) || option.equals(Config.OVERLOAD_OLDEST)) {
+						Config.overloadPolicy = option;
+					}
+					else {
+						Console.error("Invalid overload policy specified.");
+					}
+				}
+				
+				if(cmd.hasOption("pavinterface")) {
+					Config.multicastInterface = cmd.getOptionValue("pavinterface");
+				}
+				
+				if(cmd.hasOption("pavttl")) {
+					String option = cmd.getOptionValue("pavttl");
+					
+					try {
+						int ttl = Integer.parseInt(option);
+						
+						if(ttl >= 0 && ttl < 256) {
+							Config.multicastTtl = ttl;
+						}
+						else {
+							Console.error("Multicast TTL must be between 0 and 255.");
+						}
+					}
+					catch (NumberFormatException e) {
+						Console.error("Invalid multicast TTL specified.");
+					}
+				}
+				
 				if(cmd.hasOption("framesize")) {
 					String option = cmd.getOptionValue("framesize");
 					
@@ -0,0 +1,83 @@
+
+/*
+ * Processing Audio Visualization (PAV)
+ * Copyright (C) 2011  Christopher Pramerdorfer
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pav.player;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Writes the header of PAV audio packets. See pav.audiosource.PacketHeader
+ * for a description of the packet layout.
+ * 
+ * @author christopher
+ */
+final class PacketHeader
+{
+	/**
+	 * The magic number every packet starts with.
+	 */
+	public static final int MAGIC = 0x5041;
+	
+	/**
+	 * The current protocol version.
+	 */
+	public static final int VERSION = 1;
+	
+	/**
+	 * The header size in bytes.
+	 */
+	public static final int SIZE = 24;
+	
+	/**
+	 * Samples are 16 bit signed integers in little-endian byte order.
+	 */
+	public static final int FORMAT_PCM16_LE = 1;
+	
+	/**
+	 * Samples are 16 bit signed integers, losslessly compressed with RiceEncoder.
+	 */
+	public static final int FORMAT_PCM16_RICE = 4;
+	
+	/**
+	 * Writes a header to the start of a buffer.
+	 * 
+	 * @param buffer The buffer. Must have room for at least SIZE bytes
+	 * @param format The sample format
+	 * @param sequence The sequence number of the packet
+	 * @param sampleClock The index of the first sample of the packet
+	 * @param sampleRate The sample rate
+	 * @param channels The number of channels
+	 * @param numSamples The number of samples per channel
+	 */
+	public static void write(ByteBuffer buffer, int format, int sequence, long sampleClock, int sampleRate, int channels, int numSamples)
+	{
+		buffer.order(ByteOrder.BIG_ENDIAN);
+		buffer.putShort(0, (short) MAGIC);
+		buffer.put(2, (byte) VERSION);
+		buffer.put(3, (byte) format);
+		buffer.putInt(4, sequence);
+		buffer.putLong(8, sampleClock);
+		buffer.putInt(16, sampleRate);
+		buffer.putShort(20, (short) channels);
+		buffer.putShort(22, (short) numSamples);
+	}
+	
+	private PacketHeader() { }
+}
@@ -29,6 +29,12 @@ import java.io.IOException;
 import java.net.DatagramPacket;
 import java.net.DatagramSocket;
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.MulticastSocket;
+import java.net.NetworkInterface;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedList;
@@ -79,6 +85,7 @@ public class Player extends PApplet
 	public static final int STATUS_PLAYING_NOPAV = 4;
 	
 	private static final long serialVersionUID = -4078221446680493121L;
+	private static final int _sampleQueueCapacity = 5;
 		
 	private final Menu _menu;
 	private final Playlist _playlist;
@@ -86,11 +93,13 @@ public class Player extends PApplet
 	private final PAVControl _pavControl;
 	private final SongFilenameFilter _filter;
 	private final Thread _pavControlThread;
-	private final BlockingDeque<float[]> _sampleQueue;
+	private final BlockingDeque<QueuedFrame> _sampleQueue;
 
 	private Minim _minim;
 	private AudioPlayer _player;
 	private MusicListener _listener;
+	private volatile int _sampleRate;
+	private long _sampleClock;
 	
 	private File _songPath;
 	private Integer _playing;
@@ -112,7 +121,7 @@ public class Player extends PApplet
 		_playlist = new Playlist();
 		_statusBar = new StatusBar();
 		_pavControl = new PAVControl();
-		_sampleQueue = new LinkedBlockingDeque<float[]>(5);
+		_sampleQueue = new LinkedBlockingDeque<QueuedFrame>(_sampleQueueCapacity);
 		_pavControlThread = new Thread(_pavControl, "PAVControl");
 
 		_songs = new TreeMap<Integer, Player.Song>();
@@ -415,6 +424,7 @@ public class Player extends PApplet
 		stopPlayback();
 		
 		_player = _minim.loadFile(_songs.get(id).path.getAbsolutePath(), Config.frameSize);
+		_sampleRate = (int) _player.sampleRate();
 		_player.play();
 		_listener = new MusicListener();
 		_player.addListener(_listener);
@@ -565,9 +575,24 @@ public class Player extends PApplet
 		{
 			if(!_pavControl.isActive()) return;
 			
-			if(! _sampleQueue.offerLast(samples)) {
-				Console.out("Failed to add frame to PAV queue.");
+			// minim reuses its buffers
+			QueuedFrame frame = new QueuedFrame(samples.clone(), _sampleClock);
+			_sampleClock += samples.length;
+			
+			if(_sampleQueue.offerLast(frame)) {
+				return;
+			}
+			
+			if(Config.overloadPolicy.equals(Config.OVERLOAD_OLDEST)) {
+				_sampleQueue.pollFirst();
+				Console.out("Dropped frames.");
+				
+				if(_sampleQueue.offerLast(frame)) {
+					return;
+				}
 			}
+			
+			Console.out("Failed to add frame to PAV queue.");
 		}
 
 		@Override
@@ -589,6 +614,23 @@ public class Player extends PApplet
 		}
 	}
 	
+	/**
+	 * A frame waiting to be sent to PAV.
+	 * 
+	 * @author christopher
+	 */
+	private static class QueuedFrame
+	{
+		public final float[] samples;
+		public final long sampleClock;
+		
+		public QueuedFrame(float[] samples, long sampleClock)
+		{
+			this.samples = samples;
+			this.sampleClock = sampleClock;
+		}
+	}
+	
 	/**
 	 * PAV control.
 	 * 
@@ -608,36 +650,109 @@ public class Player extends PApplet
 			_active = true;
 			
 			DatagramSocket socket = null;
+			SocketChannel channel = null;
+			RingWriter ring = null;
 			
 			try {
 				int fs = Config.frameSize;
-				int fs2 = Config.frameSize * 2;
+				int size = PacketHeader.SIZE + fs * 2;
 				
 				int smax = Short.MAX_VALUE;
-				byte[] bb = new byte[fs2];
+				byte[] bb = new byte[size];
+				short[] pcm = new short[fs];
+				ByteBuffer header = ByteBuffer.wrap(bb);
+				RiceEncoder encoder = new RiceEncoder();
 				InetAddress address = InetAddress.getByName(Config.pavHost);
-				socket = new DatagramSocket();
-				DatagramPacket packet = new DatagramPacket(bb, fs2, address, Config.pavPort);
+				DatagramPacket packet = new DatagramPacket(bb, size, address, Config.pavPort);
+				
+				ByteBuffer[] stream = { ByteBuffer.allocate(4), ByteBuffer.wrap(bb) };
+				
+				if(Config.pavRing != null) {
+					ring = new RingWriter(Config.pavRing, 16, size);
+					Console.out("Writing to " + Config.pavRing + ".");
+				}
+				else if(Config.pavTcp) {
+					channel = SocketChannel.open(new InetSocketAddress(address, Config.pavPort));
+					channel.socket().setTcpNoDelay(true);
+				}
+				else {
+					socket = _createSocket(address);
+				}
+				
+				int sequence = 0;
+				ArrayList<QueuedFrame> pending = new ArrayList<QueuedFrame>(_sampleQueueCapacity);
+				boolean oldest = Config.overloadPolicy.equals(Config.OVERLOAD_OLDEST);
 				
 				while(! Thread.interrupted()) {
-					int bi = 0;
-					float[] frame = _sampleQueue.takeLast();
-
-					if(_sampleQueue.remainingCapacity() == 1) {
-						_sampleQueue.clear();
-						Console.out("Dropped frames.");
+					int bi = PacketHeader.SIZE;
+					QueuedFrame queued;
+					
+					if(oldest) {
+						// frames are sent in order, the listener drops the oldest ones if the queue is full
+						queued = _sampleQueue.takeFirst();
 					}
+					else {
+						// take the newest frame and empty the queue in one step, older frames are of no use
+						queued = _sampleQueue.takeFirst();
+						pending.clear();
+						
+						if(_sampleQueue.drainTo(pending) > 0) {
+							queued = pending.get(pending.size() - 1);
+							
+							if(pending.size() + 1 >= _sampleQueueCapacity) {
+								Console.out("Dropped frames.");
+							}
+						}
+					}
+					
+					float[] frame = queued.samples;
+					long sampleClock = queued.sampleClock;
 					
 					for(int i = 0; i < fs; i++) {
-						short s = (short) (frame[i] * smax);
+						pcm[i] = (short) (frame[i] * smax);
+					}
+					
+					// fall back to uncompressed data if compression does not pay off
+					int compressed = Config.compress ? encoder.encode(pcm, fs, bb, bi, fs * 2 - 1) : -1;
+					
+					if(compressed > 0) {
+						PacketHeader.write(header, PacketHeader.FORMAT_PCM16_RICE, sequence, sampleClock, _sampleRate, 1, fs);
+						packet.setLength(PacketHeader.SIZE + compressed);
+					}
+					else {
+						PacketHeader.write(header, PacketHeader.FORMAT_PCM16_LE, sequence, sampleClock, _sampleRate, 1, fs);
+						
+						for(int i = 0; i < fs; i++) {
+							short s = pcm[i];
+							
+							bb[bi] = (byte) (s & 0xFF);
+							bb[bi + 1] = (byte)((s >> 8) & 0xFF);
+							
+							bi += 2;
+						}
 						
-						bb[bi] = (byte) (s & 0xFF);
-						bb[bi + 1] = (byte)((s >> 8) & 0xFF);
+						packet.setLength(size);
+					}
+					
+					if(ring != null) {
+						ring.write(bb, packet.getLength());
+					}
+					else if(channel != null) {
+						// blocks if PAV can not keep up, the sample queue then drops frames
+						stream[0].clear();
+						stream[0].putInt(0, packet.getLength());
+						stream[1].clear();
+						stream[1].limit(packet.getLength());
 						
-						bi += 2;
+						while(stream[1].hasRemaining()) {
+							channel.write(stream);
+						}
+					}
+					else {
+						socket.send(packet);
 					}
 					
-					socket.send(packet);
+					sequence++;
 				}
 			}
 			catch(IOException e) {
@@ -649,6 +764,12 @@ public class Player extends PApplet
 				_active = false;
 				
 				if(socket != null) socket.close();
+				
+				if(channel != null) {
+					try { channel.close(); } catch(IOException e) { }
+				}
+				
+				if(ring != null) ring.close();
 			}
 		}
 		
@@ -661,6 +782,31 @@ public class Player extends PApplet
 		{
 			return _active;
 		}
+		
+		private DatagramSocket _createSocket(InetAddress address) throws IOException
+		{
+			if(! address.isMulticastAddress()) {
+				return new DatagramSocket();
+			}
+			
+			MulticastSocket socket = new MulticastSocket();
+			socket.setTimeToLive(Config.multicastTtl);
+			
+			if(Config.multicastInterface != null) {
+				NetworkInterface ni = NetworkInterface.getByName(Config.multicastInterface);
+				
+				if(ni == null) {
+					socket.close();
+					throw new IOException("Unknown network interface " + Config.multicastInterface + ".");
+				}
+				
+				socket.setNetworkInterface(ni);
+			}
+			
+			Console.out("Sending to multicast group " + address.getHostAddress() + ".");
+			
+			return socket;
+		}
 	}
 	
 	/**
@@ -0,0 +1,150 @@
+
+/*
+ * Processing Audio Visualization (PAV)
+ * Copyright (C) 2011  Christopher Pramerdorfer
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package pav.player;
+
+/**
+ * Lossless encoder for 16 bit PCM frames. See pav.audiosource.RiceDecoder for a
+ * description of the format.
+ * 
+ * Every frame is predicted with the fixed polynomial predictor (order 0, 1 or 2) that
+ * yields the smallest residuals, which are then Rice coded with a parameter chosen for
+ * the frame. The encoder does not allocate memory after construction.
+ * 
+ * @author christopher
+ */
+final class RiceEncoder
+{
+	/**
+	 * Quotients of this size or larger are escaped and followed by the raw value.
+	 */
+	public static final int ESCAPE = 24;
+	
+	/**
+	 * The number of bits of escaped values.
+	 */
+	public static final int ESCAPE_BITS = 18;
+	
+	private byte[] _out;
+	private int _position, _limit, _bits;
+	private long _acc;
+	
+	/**
+	 * Encodes a frame.
+	 * 
+	 * @param samples The samples. Must not be null
+	 * @param len The number of samples to encode
+	 * @param out Where to write the encoded frame to. Must not be null
+	 * @param offset The index of out to start writing at
+	 * @param limit The maximum number of bytes to write
+	 * @return The number of bytes written or -1 if the encoded frame would exceed the limit
+	 */
+	public int encode(short[] samples, int len, byte[] out, int offset, int limit)
+	{
+		if(limit < 2) {
+			return -1;
+		}
+		
+		long sum0 = 0, sum1 = 0, sum2 = 0;
+		
+		for(int i = 0, a = 0, b = 0; i < len; i++) {
+			int s = samples[i];
+			
+			sum0 += Math.abs(s);
+			sum1 += Math.abs(s - a);
+			sum2 += Math.abs(s - 2 * a + b);
+			
+			b = a;
+			a = s;
+		}
+		
+		int order = 0;
+		long sum = sum0;
+		
+		if(sum1 < sum) { order = 1; sum = sum1; }
+		if(sum2 < sum) { order = 2; sum = sum2; }
+		
+		int k = 0;
+		long mean = (len > 0) ? sum / len : 0;
+		
+		while(k < 15 && (1L << (k + 1)) <= mean) {
+			k++;
+		}
+		
+		_out = out;
+		_position = offset + 2;
+		_limit = offset + limit;
+		_acc = 0;
+		_bits = 0;
+		
+		out[offset] = (byte) order;
+		out[offset + 1] = (byte) k;
+		
+		for(int i = 0, a = 0, b = 0; i < len; i++) {
+			int s = samples[i];
+			int r;
+			
+			switch(order) {
+				case 0 : r = s; break;
+				case 1 : r = s - a; break;
+				default : r = s - 2 * a + b; break;
+			}
+			
+			b = a;
+			a = s;
+			
+			int u = (r << 1) ^ (r >> 31);
+			int q = u >>> k;
+			
+			if(q < ESCAPE) {
+				_write((1 << (q + 1)) - 2, q + 1);
+				_write(u & ((1 << k) - 1), k);
+			}
+			else {
+				_write((1 << ESCAPE) - 1, ESCAPE);
+				_write(u, ESCAPE_BITS);
+			}
+			
+			if(_position > _limit) {
+				return -1;
+			}
+		}
+		
+		if(_bits > 0) {
+			_write(0, 8 - _bits);
+		}
+		
+		return (_position > _limit) ? -1 : _position - offset;
+	}
+	
+	private void _write(int value, int bits)
+	{
+		_acc = (_acc << bits) | value;
+		_bits += bits;
+		
+		while(_bits >= 8) {
+			_bits -= 8;
+			
+			if(_position < _limit) {
+				_out[_position] = (byte) (_acc >>> _bits);
+			}
+			
+			_position++;
+		}
+	}
+}
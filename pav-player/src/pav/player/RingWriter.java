@@ -0,0 +1,120 @@
+
+/*
+ * Processing Audio Visualization (PAV)
+ * Copyright (C) 2011  Christopher Pramerdorfer
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package pav.player;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Random;
+import java.util.zip.Adler32;
+
+/**
+ * Writes packets into a memory mapped ring file that PAV instances on the same machine
+ * read from. See pav.audiosource.RingAudioSource for a description of the file layout.
+ * 
+ * @author christopher
+ */
+final class RingWriter
+{
+	private static final int _magic = 0x50415652;
+	private static final int _version = 1;
+	private static final int _headerSize = 64;
+	private static final int _slotHeaderSize = 16;
+	
+	private final RandomAccessFile _file;
+	private final MappedByteBuffer _ring;
+	private final int _numSlots, _slotSize;
+	private final Adler32 _checksum;
+	private long _sequence;
+	
+	/**
+	 * Ctor. Creates or resets the ring file.
+	 * 
+	 * @param path The path of the ring file. Must not be null
+	 * @param numSlots The number of slots. Must be > 0
+	 * @param slotSize The maximum packet size. Must be > 0
+	 * @throws IOException If the file could not be created
+	 */
+	public RingWriter(String path, int numSlots, int slotSize) throws IOException
+	{
+		_numSlots = numSlots;
+		_slotSize = slotSize;
+		_checksum = new Adler32();
+		
+		long size = _headerSize + (long) numSlots * (_slotHeaderSize + slotSize);
+		
+		_file = new RandomAccessFile(new File(path), "rw");
+		_file.setLength(size);
+		_ring = _file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+		_ring.order(ByteOrder.nativeOrder());
+		
+		_ring.putInt(0, 0);
+		_ring.putInt(4, _version);
+		_ring.putInt(8, numSlots);
+		_ring.putInt(12, slotSize);
+		_ring.putLong(24, -1);
+		
+		for(int i = 0; i < numSlots; i++) {
+			_ring.putLong(_headerSize + i * (_slotHeaderSize + slotSize), -1);
+		}
+		
+		_ring.putInt(16, new Random().nextInt());
+		_ring.putInt(0, _magic);
+	}
+	
+	/**
+	 * Publishes a packet.
+	 * 
+	 * @param packet The packet. Must not be null
+	 * @param length The length of the packet. Must be <= the slot size
+	 */
+	public void write(byte[] packet, int length)
+	{
+		long sequence = _sequence++;
+		int base = _headerSize + (int) (sequence % _numSlots) * (_slotHeaderSize + _slotSize);
+		
+		_checksum.reset();
+		_checksum.update(packet, 0, length);
+		
+		_ring.putLong(base, -1);
+		
+		for(int i = 0; i < length; i++) {
+			_ring.put(base + _slotHeaderSize + i, packet[i]);
+		}
+		
+		_ring.putInt(base + 8, length);
+		_ring.putInt(base + 12, (int) _checksum.getValue());
+		_ring.putLong(base, sequence);
+		_ring.putLong(24, sequence);
+	}
+	
+	/**
+	 * Closes the ring file. Readers keep the last packets but will not receive new ones.
+	 */
+	public void close()
+	{
+		try {
+			_file.close();
+		}
+		catch(IOException e) { }
+	}
+}
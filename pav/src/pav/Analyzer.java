@@ -0,0 +1,164 @@
+
+/*
+ * Processing Audio Visualization (PAV)
+ * Copyright (C) 2011  Christopher Pramerdorfer
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package pav;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.MulticastSocket;
+import java.net.NetworkInterface;
+import java.nio.ByteBuffer;
+import pav.audiosource.AudioCallback;
+import pav.audiosource.AudioSource;
+import pav.audiosource.FeaturePacket;
+import pav.audiosource.PacketHeader;
+import pav.lib.PAVException;
+import pav.lib.frame.Frame;
+import pav.lib.frame.FrameFeatures;
+
+/**
+ * Analyzes every frame of the audio source and sends the features to another PAV
+ * instance, so that display nodes do not have to do the analysis themselves.
+ * 
+ * @author christopher
+ */
+public class Analyzer implements AudioCallback
+{
+	private final AudioSource _audioSource;
+	private final DatagramSocket _socket;
+	private final InetAddress _address;
+	
+	private byte[] _bb;
+	private ByteBuffer _buffer;
+	private int _sequence;
+	private long _sampleClock;
+	
+	/**
+	 * Ctor.
+	 * 
+	 * @throws PAVException If the audio source or the socket could not be created
+	 */
+	public Analyzer() throws PAVException
+	{
+		try {
+			_address = InetAddress.getByName(Config.analyzerHost);
+			_socket = _createSocket(_address);
+		}
+		catch(IOException e) {
+			throw new PAVException("Error while initializing analyzer.", e);
+		}
+		
+		_bb = new byte[0];
+		_audioSource = AudioSource.factory(this);
+		
+		Frame.setSampleRate(Config.sampleRate);
+	}
+	
+	/**
+	 * Starts analyzing (in a new thread).
+	 */
+	public void start()
+	{
+		Runtime.getRuntime().addShutdownHook(new Thread()
+		{
+			@Override
+			public void run()
+			{
+				try {
+					_audioSource.close();
+				}
+				catch(InterruptedException e) { }
+				
+				_socket.close();
+			}
+		});
+		
+		Console.out("Sending features to " + _address.getHostAddress() + ":" + Config.analyzerPort + ".");
+		
+		_audioSource.read();
+	}
+	
+	@Override
+	public void onNewFrame(float[] frame, long timestamp)
+	{
+		Frame.update(frame);
+		
+		float[] spectrum = Frame.Transform.spectrum().frame();
+		float[] mels = (Config.analyzerMelBands > 0) ? Frame.Transform.melSpectrum(Config.analyzerMelBands).frame() : null;
+		
+		FrameFeatures features = new FrameFeatures(frame.length, spectrum, mels,
+				Frame.Descriptor.rms(), Frame.Descriptor.spectralCentroid(), Frame.Descriptor.beats());
+		
+		int size = PacketHeader.SIZE + FeaturePacket.size(spectrum.length, (mels == null) ? 0 : mels.length);
+		
+		if(_bb.length != size) {
+			_bb = new byte[size];
+			_buffer = ByteBuffer.wrap(_bb);
+		}
+		
+		PacketHeader.write(_buffer, PacketHeader.FORMAT_FEATURES, _sequence, _sampleClock, (int) Frame.getSampleRate(), 1, frame.length);
+		FeaturePacket.encode(features, _buffer);
+		
+		try {
+			_socket.send(new DatagramPacket(_bb, size, _address, Config.analyzerPort));
+		}
+		catch(IOException e) {
+			onError(e);
+		}
+		
+		_sequence++;
+		_sampleClock += frame.length;
+	}
+	
+	@Override
+	public void onNewFeatures(FrameFeatures features, long timestamp)
+	{
+		Console.error("The analyzer received features instead of samples, ignoring them.");
+	}
+	
+	@Override
+	public void onError(Throwable error)
+	{
+		Console.error("AudioSource error: " + error.getMessage());
+		Console.error(error);
+	}
+	
+	private DatagramSocket _createSocket(InetAddress address) throws IOException
+	{
+		if(! address.isMulticastAddress()) {
+			return new DatagramSocket();
+		}
+		
+		MulticastSocket socket = new MulticastSocket();
+		
+		if(Config.multicastInterface != null) {
+			NetworkInterface ni = NetworkInterface.getByName(Config.multicastInterface);
+			
+			if(ni == null) {
+				socket.close();
+				throw new IOException("Unknown network interface " + Config.multicastInterface + ".");
+			}
+			
+			socket.setNetworkInterface(ni);
+		}
+		
+		return socket;
+	}
+}
@@ -0,0 +1,177 @@
+
+/*
+ * Processing Audio Visualization (PAV)
+ * Copyright (C) 2011  Christopher Pramerdorfer
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package pav;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Measures the delay between the capture of audio and the time it can be heard.
+ * 
+ * The user taps along to clicks or a steady beat while the frames are presented without
+ * delay. Every tap is matched with the last beat detected before it, the median distance
+ * is the delay. This includes the network, the buffers of the player and the speakers.
+ * 
+ * Taps must anticipate the beat as when tapping along to music, reacting to each click would
+ * add the reaction time of the user to the delay. As taps are matched with the last beat, the
+ * delay is only known up to a multiple of the beat interval. Results close to a multiple are
+ * ambiguous and rejected, so the beats should be further apart than the delay.
+ * 
+ * @author christopher
+ */
+public class Calibration
+{
+	private static final long _minBeatDistance = 150000000;
+	private static final long _maxLatency = 1000000000;
+	private static final long _ambiguity = 50000000;
+	
+	private final int _numTaps;
+	private final ArrayList<Long> _beats, _taps;
+	
+	/**
+	 * Ctor.
+	 * 
+	 * @param numTaps The number of taps to collect. Must be > 0
+	 */
+	public Calibration(int numTaps)
+	{
+		_numTaps = numTaps;
+		_beats = new ArrayList<Long>();
+		_taps = new ArrayList<Long>();
+	}
+	
+	/**
+	 * Called for every presented frame.
+	 * 
+	 * @param timestamp The capture time of the frame
+	 * @param beats The beats detected in the frame, 0 if there were none
+	 */
+	public void onFrame(long timestamp, int beats)
+	{
+		if(beats == 0) {
+			return;
+		}
+		
+		int len = _beats.size();
+		
+		// a click usually triggers the detector in a few consecutive frames
+		if(len == 0 || timestamp - _beats.get(len - 1) > _minBeatDistance) {
+			_beats.add(timestamp);
+		}
+	}
+	
+	/**
+	 * Called when the user taps.
+	 * 
+	 * @param time The time of the tap, in the time base of System.nanoTime()
+	 */
+	public void tap(long time)
+	{
+		if(_taps.size() < _numTaps) {
+			_taps.add(time);
+		}
+	}
+	
+	/**
+	 * Returns the number of taps collected so far.
+	 * 
+	 * @return The number of taps
+	 */
+	public int numTaps()
+	{
+		return _taps.size();
+	}
+	
+	/**
+	 * Whether enough taps have been collected.
+	 * 
+	 * @return Whether the calibration is done
+	 */
+	public boolean done()
+	{
+		return _taps.size() >= _numTaps;
+	}
+	
+	/**
+	 * Returns the measured delay.
+	 * 
+	 * @return The delay in nanoseconds, or -1 if less than half of the taps could be matched with a beat
+	 * or if the delay is too close to a multiple of the beat interval
+	 */
+	public long result()
+	{
+		long[] distances = new long[_taps.size()];
+		int num = 0;
+		
+		for(long tap : _taps) {
+			long best = -1;
+			
+			for(long beat : _beats) {
+				long d = tap - beat;
+				
+				if(d >= 0 && d <= _maxLatency && (best < 0 || d < best)) {
+					best = d;
+				}
+			}
+			
+			if(best >= 0) {
+				distances[num++] = best;
+			}
+		}
+		
+		if(num == 0 || num * 2 < _taps.size()) {
+			return -1;
+		}
+		
+		Arrays.sort(distances, 0, num);
+		
+		long delay = distances[num / 2];
+		long interval = _beatInterval();
+		
+		if(interval > 0) {
+			long phase = delay % interval;
+			
+			// the taps might belong to an earlier or later beat
+			if(phase < _ambiguity || interval - phase < _ambiguity) {
+				return -1;
+			}
+		}
+		
+		return delay;
+	}
+	
+	private long _beatInterval()
+	{
+		int len = _beats.size();
+		
+		if(len < 2) {
+			return -1;
+		}
+		
+		long[] intervals = new long[len - 1];
+		
+		for(int i = 1; i < len; i++) {
+			intervals[i - 1] = _beats.get(i) - _beats.get(i - 1);
+		}
+		
+		Arrays.sort(intervals);
+		
+		return intervals[intervals.length / 2];
+	}
+}
@@ -0,0 +1,177 @@
+
+/*
+ * Processing Audio Visualization (PAV)
+ * Copyright (C) 2011  Christopher Pramerdorfer
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package pav;
+
+import pav.lib.frame.BeatDetector;
+import pav.lib.frame.Frame;
+import pav.lib.frame.FrameFeatures;
+import processing.core.PApplet;
+import ddf.minim.analysis.FFT;
+
+/**
+ * Combines the features of several frames into one, so that frames the renderer could not
+ * keep up with are not lost entirely. Spectra are max-pooled, so onsets and transients
+ * remain visible. The RMS is the maximum as well, the spectral centroid is averaged and the
+ * beats of all frames are combined.
+ * 
+ * Frames of samples are analyzed by the coalescer itself, the same way Frame does, but only
+ * for the features above, so add() does not change the current frame. The beats are detected
+ * with a BeatDetector of the coalescer, so every frame must be added for its history to stay
+ * intact, and the beats of the result should be used instead of the ones of Frame.
+ * 
+ * @author christopher
+ */
+public class Coalescer
+{
+	private final BeatDetector _beatDetector = new BeatDetector();
+	
+	private float[] _spectrum, _window, _windowed, _frameSpectrum;
+	private int _num, _beats, _sampleSize;
+	private float _rms, _centroid, _fftRate;
+	private FFT _fft;
+	
+	/**
+	 * Removes all frames. The history of the beat detector is kept.
+	 */
+	public void clear()
+	{
+		_num = 0;
+	}
+	
+	/**
+	 * Adds a frame.
+	 * 
+	 * @param frame The frame, either samples or features. Must not be null
+	 */
+	public void add(Object frame)
+	{
+		if(frame instanceof FrameFeatures) {
+			FrameFeatures f = (FrameFeatures) frame;
+			_pool(f.spectrum(), f.rms(), f.spectralCentroid(), f.beats(), f.sampleSize());
+		}
+		else {
+			_analyze((float[]) frame);
+		}
+	}
+	
+	/**
+	 * Returns the number of frames added since the last call to clear().
+	 * 
+	 * @return The number of frames
+	 */
+	public int size()
+	{
+		return _num;
+	}
+	
+	/**
+	 * Returns the combined features of all frames added. Must not be called if no frames were added.
+	 * 
+	 * @return The features
+	 */
+	public FrameFeatures result()
+	{
+		float[] spectrum = new float[_spectrum.length];
+		System.arraycopy(_spectrum, 0, spectrum, 0, spectrum.length);
+		
+		return new FrameFeatures(_sampleSize, spectrum, null, _rms, _centroid / _num, _beats);
+	}
+	
+	private void _analyze(float[] samples)
+	{
+		int len = samples.length;
+		float rate = Frame.getSampleRate();
+		
+		if(_fft == null || _fft.timeSize() != len || _fftRate != rate) {
+			_fft = new FFT(len, rate);
+			_fft.noAverages();
+			_fftRate = rate;
+			
+			// same window as Frame.samplesWindowed()
+			_window = new float[len];
+			_windowed = new float[len];
+			_frameSpectrum = new float[_fft.specSize()];
+			int lenDec = len - 1;
+			
+			for(int i = 0; i < len; i++) {
+				_window[i] = 0.54f - 0.46f * (float) Math.cos(PApplet.TWO_PI * i / lenDec);
+			}
+		}
+		
+		float[] window = _window;
+		float[] windowed = _windowed;
+		float energy = 0;
+		
+		for(int i = 0; i < len; i++) {
+			float v = samples[i] * window[i];
+			windowed[i] = v;
+			energy += v * v;
+		}
+		
+		FFT fft = _fft;
+		fft.forward(windowed);
+		
+		float[] spectrum = _frameSpectrum;
+		int l = spectrum.length;
+		float sum = 0, centroid = 0;
+		
+		for(int i = 0; i < l; i++) {
+			float band = fft.getBand(i);
+			spectrum[i] = (float) Math.log10(band + 1);
+			centroid += fft.indexToFreq(i) * band;
+			sum += band;
+		}
+		
+		float rms = (float) Math.sqrt(energy / len);
+		
+		_pool(spectrum, rms, (sum > 0) ? centroid / sum : 0, _beatDetector.detect(fft), len);
+	}
+	
+	private void _pool(float[] spectrum, float rms, float centroid, int beats, int sampleSize)
+	{
+		int len = spectrum.length;
+		
+		if(_num == 0 || _spectrum.length != len) {
+			// the first frame, or the sample size changed in between
+			if(_spectrum == null || _spectrum.length != len) {
+				_spectrum = new float[len];
+			}
+			
+			System.arraycopy(spectrum, 0, _spectrum, 0, len);
+			_rms = rms;
+			_centroid = centroid;
+			_beats = beats;
+			_num = 1;
+		}
+		else {
+			float[] pooled = _spectrum;
+			
+			for(int i = 0; i < len; i++) {
+				if(spectrum[i] > pooled[i]) pooled[i] = spectrum[i];
+			}
+			
+			_rms = Math.max(_rms, rms);
+			_centroid += centroid;
+			_beats |= beats;
+			_num++;
+		}
+		
+		_sampleSize = sampleSize;
+	}
+}
@@ -19,6 +19,7 @@
 
 package pav;
 
+import java.io.File;
 import java.nio.ByteOrder;
 import processing.core.PConstants;
 
@@ -39,6 +40,34 @@ public final class Config
 	 */
 	public static final String AUDIO_SOURCE_UDP = "udp";
 	
+	/**
+	 * Use tcp audio source.
+	 */
+	public static final String AUDIO_SOURCE_TCP = "tcp";
+	
+	/**
+	 * Use shared memory audio source.
+	 */
+	public static final String AUDIO_SOURCE_RING = "ring";
+	
+	/**
+	 * If the renderer falls behind, only show the newest frame.
+	 */
+	public static final String OVERLOAD_LATEST = "latest";
+	
+	/**
+	 * If the renderer falls behind, show all frames in order, dropping the oldest ones if
+	 * more than overloadBacklog frames are waiting. Applies to a single input only, with
+	 * several inputs the newest frame of every input is shown as with OVERLOAD_LATEST.
+	 */
+	public static final String OVERLOAD_OLDEST = "oldest";
+	
+	/**
+	 * If the renderer falls behind, show the newest frame with the combined features of all
+	 * waiting frames. With several inputs, the frames of every input are combined separately.
+	 */
+	public static final String OVERLOAD_COALESCE = "coalesce";
+	
 	/**
 	 * Audio data are transfered as little-endian byte stream.
 	 */
@@ -55,9 +84,10 @@ public final class Config
 	public static String audioSource = AUDIO_SOURCE_UDP;
 	
 	/**
-	 * The sample size. Must be 512, 1024 or 2048.
+	 * The sample size. Must be 512, 1024 or 2048. May be changed at runtime, the audio
+	 * sources pick up the new size with the next frame.
 	 */
-	public static int sampleSize = 1024;
+	public static volatile int sampleSize = 1024;
 	
 	/**
 	 * The sample rate.
@@ -74,11 +104,86 @@ public final class Config
 	 */
 	public static int udpPort = 2198;
 	
+	/**
+	 * The port the tcp audio source should listen to.
+	 */
+	public static int tcpPort = 2198;
+	
+	/**
+	 * The multicast group the udp audio source should join, or null to receive unicast packets only.
+	 */
+	public static String multicastGroup = null;
+	
+	/**
+	 * The network interface to join the multicast group on, or null to let the system decide.
+	 */
+	public static String multicastInterface = null;
+	
+	/**
+	 * The number of packets the udp audio source holds back while waiting for a missing packet.
+	 */
+	public static int jitterBufferDepth = 3;
+	
+	/**
+	 * If set, PAV runs as analyzer: it does not visualize, but sends the features of
+	 * every frame to this host (or multicast group).
+	 */
+	public static String analyzerHost = null;
+	
+	/**
+	 * The port the analyzer sends features to.
+	 */
+	public static int analyzerPort = 2199;
+	
+	/**
+	 * The number of mel bands the analyzer sends.
+	 */
+	public static int analyzerMelBands = 40;
+	
+	/**
+	 * If set, PAV reads from all of these audio sources at once instead of from audioSource.
+	 * Every entry is of the form type:argument, see AudioSource.factory().
+	 */
+	public static String[] sources = null;
+	
 	/**
 	 * The path to the fifo the fifo audio source should use.
 	 */
 	public static String fifoPath = "";
+	
+	/**
+	 * The path to the file the shared memory audio source should use.
+	 */
+	public static String ringPath = new File(System.getProperty("java.io.tmpdir"), "pav.ring").getPath();
 		
+	/**
+	 * The time in milliseconds between the capture of audio and its visualization. Should
+	 * match the time it takes for the audio to be heard.
+	 */
+	public static int displayDelay = 0;
+	
+	/**
+	 * What to do with frames the renderer could not keep up with, one of the OVERLOAD constants.
+	 */
+	public static String overloadPolicy = OVERLOAD_LATEST;
+	
+	/**
+	 * The maximum number of frames waiting to be shown if overloadPolicy is OVERLOAD_OLDEST.
+	 */
+	public static int overloadBacklog = 8;
+	
+	/**
+	 * The RMS below which frames are considered silent, see Frame.Descriptor.rms(). After a few
+	 * seconds of silence PAV stops analyzing and lowers the frame rate until the signal returns.
+	 * 0 disables this.
+	 */
+	public static float idleThreshold = 0.001f;
+	
+	/**
+	 * The frame rate to use while idle.
+	 */
+	public static int idleFrameRate = 10;
+	
 	/**
 	 * The width of the display window.
 	 */
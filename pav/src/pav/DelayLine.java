@@ -0,0 +1,147 @@
+
+/*
+ * Processing Audio Visualization (PAV)
+ * Copyright (C) 2011  Christopher Pramerdorfer
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package pav;
+
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * Holds timestamped frames back until they are due for presentation.
+ * 
+ * A frame captured at time t is due at t + delay, which should match the time it can be
+ * heard. Frames are added by the audio sources and taken by the render thread.
+ * 
+ * @author christopher
+ */
+public class DelayLine
+{
+	private final LinkedList<Entry> _entries;
+	
+	/**
+	 * Ctor.
+	 */
+	public DelayLine()
+	{
+		_entries = new LinkedList<Entry>();
+	}
+	
+	/**
+	 * Adds a frame.
+	 * 
+	 * @param frame The frame. Must not be null
+	 * @param timestamp The capture time of the frame, in the time base of System.nanoTime()
+	 */
+	public synchronized void add(Object frame, long timestamp)
+	{
+		_entries.add(new Entry(frame, timestamp));
+		notifyAll();
+	}
+	
+	/**
+	 * Removes all frames that are due, waiting for the first one if necessary.
+	 * 
+	 * @param delay The presentation delay in nanoseconds. Must be >= 0
+	 * @param timeout The maximum time to wait in milliseconds. Must be >= 0
+	 * @param out Where to put the due frames to, in order of arrival. Must not be null
+	 * @return The number of frames added to out
+	 * @throws InterruptedException If the thread was interrupted while waiting
+	 */
+	public synchronized int drain(long delay, long timeout, List<Entry> out) throws InterruptedException
+	{
+		long deadline = System.nanoTime() + timeout * 1000000;
+		
+		while(true) {
+			long now = System.nanoTime();
+			long next = Long.MAX_VALUE;
+			int num = 0;
+			
+			for(Iterator<Entry> it = _entries.iterator(); it.hasNext(); ) {
+				Entry e = it.next();
+				long due = e._timestamp + delay;
+				
+				if(due - now <= 0) {
+					out.add(e);
+					it.remove();
+					num++;
+				}
+				else if(due < next) {
+					next = due;
+				}
+			}
+			
+			if(num > 0) {
+				return num;
+			}
+			
+			long wait = Math.min(next, deadline) - now;
+			
+			if(wait <= 0) {
+				return 0;
+			}
+			
+			wait(wait / 1000000, (int) (wait % 1000000));
+		}
+	}
+	
+	/**
+	 * Returns the number of frames that are not due yet.
+	 * 
+	 * @return The number of frames
+	 */
+	public synchronized int size()
+	{
+		return _entries.size();
+	}
+	
+	/**
+	 * A timestamped frame.
+	 */
+	public static class Entry
+	{
+		private final Object _frame;
+		private final long _timestamp;
+		
+		private Entry(Object frame, long timestamp)
+		{
+			_frame = frame;
+			_timestamp = timestamp;
+		}
+		
+		/**
+		 * Returns the frame.
+		 * 
+		 * @return The frame
+		 */
+		public Object frame()
+		{
+			return _frame;
+		}
+		
+		/**
+		 * Returns the capture time of the frame.
+		 * 
+		 * @return The timestamp
+		 */
+		public long timestamp()
+		{
+			return _timestamp;
+		}
+	}
+}
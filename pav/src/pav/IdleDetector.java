@@ -0,0 +1,95 @@
+
+/*
+ * Processing Audio Visualization (PAV)
+ * Copyright (C) 2011  Christopher Pramerdorfer
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package pav;
+
+/**
+ * Detects silence using the RMS of frames.
+ * 
+ * The detector becomes idle once a number of consecutive frames were below the threshold,
+ * and wakes up on the first frame above twice the threshold. The gap between both levels
+ * keeps it from toggling on low noise.
+ * 
+ * @author christopher
+ */
+public class IdleDetector
+{
+	private final float _threshold;
+	private int _hold;
+	
+	private int _quiet;
+	private boolean _idle;
+	
+	/**
+	 * Ctor.
+	 * 
+	 * @param threshold The RMS below which a frame is considered silent. 0 disables the detector
+	 * @param hold The number of consecutive silent frames required to become idle. Must be > 0
+	 */
+	public IdleDetector(float threshold, int hold)
+	{
+		_threshold = threshold;
+		_hold = hold;
+	}
+	
+	/**
+	 * Updates the detector with the next frame.
+	 * 
+	 * @param rms The RMS of the frame
+	 * @return Whether the detector is idle
+	 */
+	public boolean update(float rms)
+	{
+		if(_idle) {
+			if(rms >= _threshold * 2) {
+				_idle = false;
+				_quiet = 0;
+			}
+		}
+		else if(rms < _threshold) {
+			_quiet++;
+			_idle = (_quiet >= _hold);
+		}
+		else {
+			_quiet = 0;
+		}
+		
+		return _idle;
+	}
+	
+	/**
+	 * Sets the number of consecutive silent frames required to become idle. Should be
+	 * updated whenever the duration of a frame changes.
+	 * 
+	 * @param hold The number of frames. Must be > 0
+	 */
+	public void setHold(int hold)
+	{
+		_hold = hold;
+	}
+	
+	/**
+	 * Whether the detector is idle.
+	 * 
+	 * @return Whether the detector is idle
+	 */
+	public boolean idle()
+	{
+		return _idle;
+	}
+}
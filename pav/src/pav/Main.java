@@ -27,6 +27,7 @@ import org.apache.commons.cli.GnuParser;
 import org.apache.commons.cli.HelpFormatter;
 import org.apache.commons.cli.Options;
 import org.apache.commons.cli.ParseException;
+import pav.lib.PAVException;
 import processing.core.PApplet;
 
 public class Main
@@ -45,13 +46,25 @@ public class Main
 		options.addOption("width", true, "The width of the visualization window.");
 		options.addOption("height", true, "The height of the visualization window.");
 
-		options.addOption("audiosource", true, "Audio source to use (udp or fifo).");
+		options.addOption("overload", true, "What to do if frames arrive faster than they can be shown (latest, oldest or coalesce).");
+		options.addOption("idle", true, "RMS below which the input is considered silent, 0 to never idle.");
+		options.addOption("delay", true, "Delay in milliseconds between the capture of audio and its visualization.");
+
+		options.addOption("audiosource", true, "Audio source to use (udp, tcp, ring or fifo).");
+		options.addOption("sources", true, "Read from several audio sources at once (comma separated, e.g. udp:2198,tcp:2200).");
 		options.addOption("samplesize", true, "Number of samples per frame (512, 1024 or 2048)");
 		options.addOption("samplerate", true, "The sample rate of the audio data.");
 		options.addOption("byteorder", true, "Byte order of the samples (le or be)");
 		
-		options.addOption("path", true, "Path to the fifo the fifo audio source should use.");
-		options.addOption("port", true, "Port the udp audio source should listen to.");
+		options.addOption("path", true, "Path to the fifo or ring file the fifo or ring audio source should use.");
+		options.addOption("port", true, "Port the udp or tcp audio source should listen to.");
+		options.addOption("group", true, "Multicast group the udp audio source should join.");
+		options.addOption("interface", true, "Network interface to join the multicast group on.");
+		options.addOption("jitter", true, "Number of packets the udp audio source may hold back to reorder them.");
+		
+		options.addOption("analyze", true, "Do not visualize, send the features of every frame to this host.");
+		options.addOption("analyzeport", true, "Port the analyzer sends features to.");
+		options.addOption("melbands", true, "Number of mel bands the analyzer sends.");
 		
 		CommandLineParser parser = new GnuParser();
 		
@@ -93,6 +106,49 @@ public class Main
 				Console.out("No window height specified, using " + Config.windowHeight + ".");
 			}
 			
+			if(cmd.hasOption("overload")) {
+				String policy = cmd.getOptionValue("overload");
+				
+				if(policy.equals(Config.OVERLOAD_LATEST) || policy.equals(Config.OVERLOAD_OLDEST) || policy.equals(Config.OVERLOAD_COALESCE)) {
+					Config.overloadPolicy = policy;
+				}
+				else {
+					Console.error("Invalid overload policy specified.");
+				}
+			}
+			
+			if(cmd.hasOption("idle")) {
+				try {
+					float threshold = Float.parseFloat(cmd.getOptionValue("idle"));
+					
+					if(threshold >= 0) {
+						Config.idleThreshold = threshold;
+					}
+					else {
+						Console.error("Invalid idle threshold specified.");
+					}
+				}
+				catch(NumberFormatException e) {
+					Console.error("Error while parsing command line arguments: idle is not a valid number.");
+				}
+			}
+			
+			if(cmd.hasOption("delay")) {
+				try {
+					int delay = Integer.parseInt(cmd.getOptionValue("delay"));
+					
+					if(delay >= 0 && delay <= 2000) {
+						Config.displayDelay = delay;
+					}
+					else {
+						Console.error("Invalid delay specified.");
+					}
+				}
+				catch(NumberFormatException e) {
+					Console.error("Error while parsing command line arguments: delay is not a valid integer.");
+				}
+			}
+			
 			if(cmd.hasOption("audiosource")) {
 				if(cmd.getOptionValue("audiosource").equals(Config.AUDIO_SOURCE_FIFO)) {
 					Config.audioSource = Config.AUDIO_SOURCE_FIFO;
@@ -100,6 +156,12 @@ public class Main
 				else if(cmd.getOptionValue("audiosource").equals(Config.AUDIO_SOURCE_UDP)) {
 					Config.audioSource = Config.AUDIO_SOURCE_UDP;
 				}
+				else if(cmd.getOptionValue("audiosource").equals(Config.AUDIO_SOURCE_TCP)) {
+					Config.audioSource = Config.AUDIO_SOURCE_TCP;
+				}
+				else if(cmd.getOptionValue("audiosource").equals(Config.AUDIO_SOURCE_RING)) {
+					Config.audioSource = Config.AUDIO_SOURCE_RING;
+				}
 				else {
 					Console.error("Invalid audio source specified.");
 				}
@@ -108,6 +170,16 @@ public class Main
 				Console.out("No audio source specified, using " + Config.audioSource + ".");
 			}
 			
+			if(cmd.hasOption("sources")) {
+				String[] sources = cmd.getOptionValue("sources").split(",");
+				
+				for(int i = 0; i < sources.length; i++) {
+					sources[i] = sources[i].trim();
+				}
+				
+				Config.sources = sources;
+			}
+			
 			if(cmd.hasOption("samplesize")) {
 				try {
 					int sampleSize = Integer.parseInt(cmd.getOptionValue("samplesize"));
@@ -169,6 +241,29 @@ public class Main
 				}
 			}
 			
+			if(Config.audioSource.equals(Config.AUDIO_SOURCE_RING)) {
+				if(cmd.hasOption("path")) {
+					Config.ringPath = cmd.getOptionValue("path");
+				}
+				else {
+					Console.out("No ring file specified, using " + Config.ringPath + ".");
+				}
+			}
+			
+			if(Config.audioSource.equals(Config.AUDIO_SOURCE_TCP)) {
+				if(cmd.hasOption("port")) {
+					try {
+						Config.tcpPort = Integer.parseInt(cmd.getOptionValue("port"));
+					}
+					catch(NumberFormatException e) {
+						Console.error("Error while parsing command line arguments: port is not a valid integer.");
+					}
+				}
+				else {
+					Console.out("No port specified, using " + Config.tcpPort + ".");
+				}
+			}
+			
 			if(Config.audioSource.equals(Config.AUDIO_SOURCE_UDP)) {
 				if(cmd.hasOption("port")) {
 					try {
@@ -181,6 +276,62 @@ public class Main
 				else {
 					Console.out("No port specified, using " + Config.udpPort + ".");
 				}
+				
+				if(cmd.hasOption("group")) {
+					Config.multicastGroup = cmd.getOptionValue("group");
+				}
+				
+				if(cmd.hasOption("interface")) {
+					Config.multicastInterface = cmd.getOptionValue("interface");
+				}
+				
+				if(cmd.hasOption("jitter")) {
+					try {
+						int depth = Integer.parseInt(cmd.getOptionValue("jitter"));
+						
+						if(depth > 0) {
+							Config.jitterBufferDepth = depth;
+						}
+						else {
+							Console.error("Invalid jitter buffer depth specified.");
+						}
+					}
+					catch(NumberFormatException e) {
+						Console.error("Error while parsing command line arguments: jitter is not a valid integer.");
+					}
+				}
+			}
+			
+			if(cmd.hasOption("analyze")) {
+				Config.analyzerHost = cmd.getOptionValue("analyze");
+				
+				if(cmd.hasOption("analyzeport")) {
+					try {
+						Config.analyzerPort = Integer.parseInt(cmd.getOptionValue("analyzeport"));
+					}
+					catch(NumberFormatException e) {
+						Console.error("Error while parsing command line arguments: analyzeport is not a valid integer.");
+					}
+				}
+				else {
+					Console.out("No analyzer port specified, using " + Config.analyzerPort + ".");
+				}
+				
+				if(cmd.hasOption("melbands")) {
+					try {
+						int bands = Integer.parseInt(cmd.getOptionValue("melbands"));
+						
+						if(bands >= 0 && bands < 256) {
+							Config.analyzerMelBands = bands;
+						}
+						else {
+							Console.error("Invalid number of mel bands specified.");
+						}
+					}
+					catch(NumberFormatException e) {
+						Console.error("Error while parsing command line arguments: melbands is not a valid integer.");
+					}
+				}
 			}
 		}
 		catch (ParseException e) {
@@ -188,6 +339,17 @@ public class Main
 			new HelpFormatter().printHelp("pav", options);
 		}
 		
+		if(Config.analyzerHost != null) {
+			try {
+				new Analyzer().start();
+			}
+			catch(PAVException e) {
+				Console.error("Error while starting the analyzer: " + e.getMessage());
+			}
+			
+			return;
+		}
+		
 		PApplet.main(new String[] { "pav.PAV" });
 	}
 }
@@ -23,18 +23,20 @@ import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
 import java.awt.event.WindowListener;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
 import java.util.Map;
-import java.util.concurrent.BlockingDeque;
-import java.util.concurrent.LinkedBlockingDeque;
-import java.util.concurrent.TimeUnit;
 import pav.audiosource.AudioCallback;
 import pav.audiosource.AudioSource;
+import pav.audiosource.MultiAudioSource;
 import pav.configurator.Configurator;
 import pav.configurator.ConfiguratorFactory;
 import pav.lib.PAVException;
 import pav.lib.ShaderManager;
 import pav.lib.Visualization;
 import pav.lib.VisualizationImpl;
+import pav.lib.frame.Frame;
+import pav.lib.frame.FrameFeatures;
 import pav.lib.visualizer.Boxes;
 import pav.lib.visualizer.Bubbles;
 import pav.lib.visualizer.MelSpectrum;
@@ -47,6 +49,7 @@ import pav.lib.visualizer.Waveform;
 import pav.lib.visualizer.Wavering;
 import processing.core.PApplet;
 import processing.core.PFont;
+import processing.core.PImage;
 import codeanticode.glgraphics.GLGraphics;
 
 /**
@@ -57,6 +60,10 @@ import codeanticode.glgraphics.GLGraphics;
 public class PAV extends PApplet implements AudioCallback
 {
 	private static final int _frameDropUpdateInterval = 200;
+	private static final int _calibrationTaps = 16;
+	private static final int _maxDelay = 2000;
+	private static final int _frameRate = 100;
+	private static final float _idleHoldSeconds = 3;
 	
 	private static final long serialVersionUID = 1525235544995508743L;
 	
@@ -69,7 +76,21 @@ public class PAV extends PApplet implements AudioCallback
 	private int _inputHistoryPosition;
 	private final ArrayList<String> _inputHistory;
 	private final ArrayList<Configurator> _configurators;
-	private final BlockingDeque<float[]> _sampleQueue;
+	private final DelayLine _delayLine;
+	private final ArrayList<DelayLine.Entry> _due;
+	private final LinkedList<DelayLine.Entry> _backlog;
+	private final Coalescer _coalescer;
+	
+	private long _delay;
+	private Calibration _calibration;
+	
+	private final IdleDetector _idleDetector;
+	private PImage _idleImage;
+	
+	private final Object[] _latest;
+	private final boolean[] _fresh;
+	private final Coalescer[] _coalescers;
+	private final FrameFeatures[] _pooled;
 	
 	private float _frameDropPercentage;
 	private int _numFramesVisualized;
@@ -87,8 +108,37 @@ public class PAV extends PApplet implements AudioCallback
 		_inputHistory = new ArrayList<String>();
 		_configurators = new ArrayList<Configurator>();
 		_configurators.add(ConfiguratorFactory.generic());
-		_sampleQueue = new LinkedBlockingDeque<float[]>();
-		_audioSource = AudioSource.factory(this);
+		_delayLine = new DelayLine();
+		_due = new ArrayList<DelayLine.Entry>();
+		_backlog = new LinkedList<DelayLine.Entry>();
+		_coalescer = new Coalescer();
+		_delay = Config.displayDelay * 1000000L;
+		_idleDetector = new IdleDetector(Config.idleThreshold, _idleHold());
+		
+		if(Config.sources == null) {
+			_latest = null;
+			_fresh = null;
+			_coalescers = null;
+			_pooled = null;
+			_audioSource = AudioSource.factory(this);
+		}
+		else {
+			AudioCallback[] callbacks = new AudioCallback[Config.sources.length];
+			
+			for(int i = 0; i < callbacks.length; i++) {
+				callbacks[i] = new InputCallback(i);
+			}
+			
+			_latest = new Object[callbacks.length];
+			_fresh = new boolean[callbacks.length];
+			_coalescers = new Coalescer[callbacks.length];
+			_pooled = new FrameFeatures[callbacks.length];
+			
+			for(int i = 0; i < callbacks.length; i++) {
+				_coalescers[i] = new Coalescer();
+			}
+			_audioSource = new MultiAudioSource(Config.sources, callbacks);
+		}
 	}
 
 	/**
@@ -99,7 +149,7 @@ public class PAV extends PApplet implements AudioCallback
 	{
 		size(Config.windowWidth, Config.windowHeight, Config.renderer);
 		background(0);
-		frameRate(100);
+		frameRate(_frameRate);
 
 		_statusFont = createFont("sans", 12, true);
 		textFont(_statusFont);
@@ -146,22 +196,12 @@ public class PAV extends PApplet implements AudioCallback
 	@Override
 	public void draw()
 	{
-		background(0);
-	
 		try {
-			float[] frame = _sampleQueue.pollLast(66, TimeUnit.MILLISECONDS);
-			
-			if(frame != null) {
-				int len = _sampleQueue.size();
-				
-				if(len > 0) {
-					_sampleQueue.clear();
-				}
-				
-				_numFramesReceived += len + 1;
-				
-				_numFramesVisualized++;
-				_visualization.process(frame);	
+			if(_latest != null) {
+				_drawInputs();
+			}
+			else {
+				_drawSingle();
 			}
 		}
 		catch(InterruptedException e) {
@@ -186,7 +226,7 @@ public class PAV extends PApplet implements AudioCallback
 			_drawStatus();
 		}
 	}
-
+	
 	/**
 	 * Closes the program.
 	 */
@@ -216,6 +256,11 @@ public class PAV extends PApplet implements AudioCallback
 			return;
 		}
 		
+		if(_inputBuffer.length() == 0 && key == ' ' && _calibration != null) {
+			_tap();
+			return;
+		}
+		
 		if(keyCode == 38) {
 			if(! _inputHistory.isEmpty()) {
 				if(_inputHistoryPosition == -1) {
@@ -269,6 +314,19 @@ public class PAV extends PApplet implements AudioCallback
 		else if(in[0].equals("rem") && in.length == 2) {
 			valid = _removeVisualizer(in[1]);
 		}
+		else if(in[0].equals("delay") && in.length == 2) {
+			valid = _setDelay(in[1]);
+		}
+		else if(in[0].equals("calibrate") && in.length == 1) {
+			_calibration = new Calibration(_calibrationTaps);
+			valid = true;
+		}
+		else if(in[0].equals("samplesize") && in.length == 2) {
+			valid = _setSampleSize(in[1]);
+		}
+		else if(in[0].equals("input") && in.length == 3) {
+			valid = _bindInput(in[1], in[2]);
+		}
 		else if(in[0].equals("c") && _inputBuffer.length() > 2) {
 			valid = _configureVisualizer(_inputBuffer.substring(2, _inputBuffer.length()));
 		}
@@ -282,9 +340,15 @@ public class PAV extends PApplet implements AudioCallback
 	}
 	
 	@Override
-	public void onNewFrame(float[] frame)
+	public void onNewFrame(float[] frame, long timestamp)
 	{
-		_sampleQueue.add(frame);
+		_delayLine.add(frame, timestamp);
+	}
+	
+	@Override
+	public void onNewFeatures(FrameFeatures features, long timestamp)
+	{
+		_delayLine.add(features, timestamp);
 	}
 
 	@Override
@@ -294,6 +358,241 @@ public class PAV extends PApplet implements AudioCallback
 		Console.error(error);
 	}
 	
+	private void _drawSingle() throws InterruptedException, PAVException
+	{
+		boolean oldest = Config.overloadPolicy.equals(Config.OVERLOAD_OLDEST);
+		boolean coalesce = Config.overloadPolicy.equals(Config.OVERLOAD_COALESCE);
+		
+		_due.clear();
+		int len = _delayLine.drain(_presentationDelay(), _backlog.isEmpty() ? 66 : 0, _due);
+		
+		_numFramesReceived += len;
+		
+		if(oldest) {
+			// show every frame in order, dropping the oldest ones if the backlog gets too long
+			_backlog.addAll(_due);
+			
+			while(_backlog.size() > Config.overloadBacklog) {
+				_backlog.removeFirst();
+			}
+			
+			_due.clear();
+			
+			if(! _backlog.isEmpty()) {
+				_due.add(_backlog.removeFirst());
+			}
+			
+			len = _due.size();
+		}
+		else {
+			_backlog.clear();
+		}
+		
+		if(len == 0) {
+			_clear();
+			return;
+		}
+		
+		// either a frame or the features of a frame, by default only the newest one is shown
+		DelayLine.Entry e = _due.get(len - 1);
+		Object frame = e.frame();
+		float rms = 0;
+		
+		for(DelayLine.Entry d : _due) {
+			rms = Math.max(rms, _rms(d.frame()));
+		}
+		
+		if(_sleep(rms)) {
+			_numFramesVisualized += len + _backlog.size();
+			_backlog.clear();
+			return;
+		}
+		
+		FrameFeatures pooled = null;
+		
+		if(coalesce) {
+			// also a single frame, so that the beat detector of the coalescer sees every frame
+			_coalescer.clear();
+			
+			for(DelayLine.Entry d : _due) {
+				_coalescer.add(d.frame());
+			}
+			
+			pooled = _coalescer.result();
+			_numFramesVisualized += len;
+		}
+		else {
+			_numFramesVisualized++;
+		}
+		
+		background(0);
+		
+		if(frame instanceof FrameFeatures) {
+			_visualization.process((pooled != null) ? pooled : (FrameFeatures) frame);
+		}
+		else if(pooled != null) {
+			_visualization.process((float[]) frame, pooled);
+		}
+		else {
+			_visualization.process((float[]) frame);
+		}
+		
+		if(_calibration != null) {
+			_calibration.onFrame(e.timestamp(), Frame.Descriptor.beats());
+		}
+		
+		_snapshot();
+	}
+	
+	private void _drawInputs() throws InterruptedException, PAVException
+	{
+		boolean coalesce = Config.overloadPolicy.equals(Config.OVERLOAD_COALESCE);
+		
+		_due.clear();
+		int len = _delayLine.drain(_presentationDelay(), 66, _due);
+		
+		if(len == 0) {
+			_clear();
+			return;
+		}
+		
+		boolean[] fresh = _fresh;
+		long timestamp = 0;
+		
+		Arrays.fill(fresh, false);
+		
+		// keep the latest frame of every input, inputs without new data are drawn with their last frame
+		for(DelayLine.Entry e : _due) {
+			InputFrame f = (InputFrame) e.frame();
+			
+			if(coalesce) {
+				if(! fresh[f.input]) {
+					_coalescers[f.input].clear();
+				}
+				
+				_coalescers[f.input].add(f.frame);
+			}
+			
+			_latest[f.input] = f.frame;
+			fresh[f.input] = true;
+			
+			if(f.input == 0) {
+				timestamp = e.timestamp();
+			}
+		}
+		
+		for(int i = 0; i < fresh.length; i++) {
+			if(! coalesce) {
+				_pooled[i] = null;
+			}
+			else if(fresh[i]) {
+				_pooled[i] = _coalescers[i].result();
+			}
+		}
+		
+		_numFramesReceived += len;
+		
+		float rms = 0;
+		int numFresh = 0;
+		
+		for(int i = 0; i < fresh.length; i++) {
+			if(fresh[i]) {
+				rms = Math.max(rms, _rms(_latest[i]));
+				numFresh++;
+			}
+		}
+		
+		int numShown = coalesce ? len : numFresh;
+		_numFramesVisualized += numShown;
+		
+		// idle only if all inputs are silent
+		if(_sleep(rms)) {
+			_numFramesVisualized += len - numShown;
+			return;
+		}
+		
+		background(0);
+		
+		for(int i = 0; i < _latest.length; i++) {
+			if(_pooled[i] != null && _latest[i] instanceof FrameFeatures) {
+				_visualization.process(i, _pooled[i]);
+			}
+			else if(_pooled[i] != null) {
+				_visualization.process(i, (float[]) _latest[i], _pooled[i]);
+			}
+			else if(_latest[i] instanceof FrameFeatures) {
+				_visualization.process(i, (FrameFeatures) _latest[i]);
+			}
+			else if(_latest[i] != null) {
+				_visualization.process(i, (float[]) _latest[i]);
+			}
+			
+			if(i == 0 && fresh[0] && _calibration != null) {
+				_calibration.onFrame(timestamp, Frame.Descriptor.beats());
+			}
+		}
+		
+		_snapshot();
+	}
+	
+	private float _rms(Object frame)
+	{
+		if(frame instanceof FrameFeatures) {
+			return ((FrameFeatures) frame).rms();
+		}
+		
+		// windowed like Frame.Descriptor.rms(), without updating Frame
+		return Frame.Descriptor.rms((float[]) frame);
+	}
+	
+	private int _idleHold()
+	{
+		return Math.max(1, (int) (_idleHoldSeconds * Config.sampleRate / Config.sampleSize));
+	}
+	
+	private boolean _sleep(float rms)
+	{
+		boolean wasIdle = _idleDetector.idle();
+		boolean idle = _idleDetector.update(rms);
+		
+		if(wasIdle && idle && _idleImage != null) {
+			image(_idleImage, 0, 0);
+			return true;
+		}
+		
+		if(wasIdle && ! idle) {
+			_idleImage = null;
+			frameRate(_frameRate);
+		}
+		
+		return false;
+	}
+	
+	private void _snapshot()
+	{
+		if(_idleDetector.idle() && _idleImage == null) {
+			// the last frame before going idle stays on screen
+			_idleImage = get();
+			frameRate(Config.idleFrameRate);
+		}
+	}
+	
+	private void _clear()
+	{
+		if(_idleImage != null) {
+			image(_idleImage, 0, 0);
+		}
+		else {
+			background(0);
+		}
+	}
+	
+	private long _presentationDelay()
+	{
+		// while calibrating, frames are shown as soon as possible to measure the full delay
+		return (_calibration == null) ? _delay : 0;
+	}
+	
 	private void _drawInput()
 	{
 		if(_inputBuffer.length() == 0) {
@@ -315,6 +614,29 @@ public class PAV extends PApplet implements AudioCallback
 		fill(0xFFAAAA00);
 		text("Frames dropped: " + _frameDropPercentage + "%", x, y);
 		y += 20;
+		
+		if(_calibration != null) {
+			text("Calibrating: tap space along with the beat, do not react to it (" + _calibration.numTaps() + "/" + _calibrationTaps + ")", x, y);
+			y += 20;
+		}
+		else if(_delay > 0) {
+			text("Delay: " + (_delay / 1000000) + " ms", x, y);
+			y += 20;
+		}
+		
+		if(_idleImage != null) {
+			text("Idle, waiting for a signal.", x, y);
+			y += 20;
+		}
+		
+		String sourceStatus = _audioSource.getStatus();
+		
+		if(sourceStatus != null) {
+			for(String line : sourceStatus.split("\n")) {
+				text(line, x, y);
+				y += 20;
+			}
+		}
 				
 		if(_visualization.numVisualizers() == 0) {
 			fill(0xFFFF0000);
@@ -325,7 +647,8 @@ public class PAV extends PApplet implements AudioCallback
 			fill(200);
 			
 			for(Map.Entry<Integer, Visualizer> v : _visualization.getVisualizers().entrySet()) {
-				text("[" + v.getKey() + "] - " + v.getValue(), x, y);
+				String input = (_latest == null) ? "" : " (input " + _visualization.getInput(v.getKey()) + ")";
+				text("[" + v.getKey() + "] - " + v.getValue() + input, x, y);
 				y += 18;
 			}
 		}
@@ -440,6 +763,85 @@ public class PAV extends PApplet implements AudioCallback
 		}
 	}
 	
+	private boolean _setDelay(String delay)
+	{
+		try {
+			int ms = Integer.parseInt(delay);
+			
+			if(ms < 0 || ms > _maxDelay) {
+				return false;
+			}
+			
+			_delay = ms * 1000000L;
+			return true;
+		}
+		catch(NumberFormatException e) {
+			return false;
+		}
+	}
+	
+	private boolean _setSampleSize(String size)
+	{
+		try {
+			int sampleSize = Integer.parseInt(size);
+			
+			if(sampleSize != 512 && sampleSize != 1024 && sampleSize != 2048) {
+				return false;
+			}
+			
+			// the sources and the analysis adapt to the new size with the next frame
+			Config.sampleSize = sampleSize;
+			_idleDetector.setHold(_idleHold());
+			
+			return true;
+		}
+		catch(NumberFormatException e) {
+			return false;
+		}
+	}
+	
+	private void _tap()
+	{
+		_calibration.tap(System.nanoTime());
+		
+		if(! _calibration.done()) {
+			return;
+		}
+		
+		long result = _calibration.result();
+		_calibration = null;
+		
+		if(result < 0) {
+			Console.error("Calibration failed, not enough beats detected or the delay is close to a multiple of the beat interval. Tap along to clicks or music with a steady beat, with beats further apart than the delay.");
+		}
+		else {
+			_delay = Math.min(result, _maxDelay * 1000000L);
+			Console.out("Calibration done, using a delay of " + (_delay / 1000000) + " ms.");
+		}
+	}
+	
+	private boolean _bindInput(String level, String input)
+	{
+		if(_latest == null) {
+			return false;
+		}
+		
+		try {
+			int l = Integer.parseInt(level);
+			int i = Integer.parseInt(input);
+			
+			if(_visualization.getVisualizer(l) == null || i < 0 || i >= _latest.length) {
+				return false;
+			}
+			
+			_visualization.setInput(l, i);
+			return true;
+		}
+		catch(NumberFormatException e) {
+			return false;
+		}
+	}
+	
 	private boolean _configureVisualizer(String query)
 	{
 		String[] q = query.split(" ");
@@ -467,4 +869,50 @@ public class PAV extends PApplet implements AudioCallback
 		
 		return false;
 	}
+	
+	/**
+	 * A frame of one of several inputs.
+	 */
+	private static class InputFrame
+	{
+		final int input;
+		final Object frame;
+		
+		InputFrame(int input, Object frame)
+		{
+			this.input = input;
+			this.frame = frame;
+		}
+	}
+	
+	/**
+	 * Receives the frames of one of several inputs.
+	 */
+	private class InputCallback implements AudioCallback
+	{
+		private final int _input;
+		
+		InputCallback(int input)
+		{
+			_input = input;
+		}
+		
+		@Override
+		public void onNewFrame(float[] frame, long timestamp)
+		{
+			_delayLine.add(new InputFrame(_input, frame), timestamp);
+		}
+		
+		@Override
+		public void onNewFeatures(FrameFeatures features, long timestamp)
+		{
+			_delayLine.add(new InputFrame(_input, features), timestamp);
+		}
+		
+		@Override
+		public void onError(Throwable error)
+		{
+			PAV.this.onError(error);
+		}
+	}
 }
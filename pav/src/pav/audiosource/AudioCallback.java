@@ -19,9 +19,16 @@
 
 package pav.audiosource;
 
+import pav.lib.frame.FrameFeatures;
+
 /**
  * Audio Callback used by audio sources.
  * 
+ * Timestamps are given in the time base of System.nanoTime() and denote when the first
+ * sample of a frame was captured, as far as the audio source can tell. Sources that know
+ * the sample clock of the sender derive them from it, so they do not jitter with the
+ * network. Others use the time of arrival.
+ * 
  * @author christopher
  */
 public interface AudioCallback
@@ -30,8 +37,17 @@ public interface AudioCallback
 	 * Called on new audio frames.
 	 * 
 	 * @param frame The frame. Must not be null
+	 * @param timestamp The capture time of the frame
+	 */
+	void onNewFrame(float[] frame, long timestamp);
+	
+	/**
+	 * Called on precomputed features of new audio frames.
+	 * 
+	 * @param features The features. Must not be null
+	 * @param timestamp The capture time of the frame the features belong to
 	 */
-	void onNewFrame(float[] frame);
+	void onNewFeatures(FrameFeatures features, long timestamp);
 		
 	/**
 	 * Called on errors.
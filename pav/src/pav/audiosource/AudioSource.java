@@ -45,6 +45,12 @@ public abstract class AudioSource
 			else if(Config.audioSource.equals(Config.AUDIO_SOURCE_UDP)) {
 				return new UDPAudioSource(callback);
 			}
+			else if(Config.audioSource.equals(Config.AUDIO_SOURCE_TCP)) {
+				return new TCPAudioSource(callback);
+			}
+			else if(Config.audioSource.equals(Config.AUDIO_SOURCE_RING)) {
+				return new RingAudioSource(callback);
+			}
 			else {
 				throw new PAVException("Invalid audio source specified.");
 			}
@@ -54,11 +60,62 @@ public abstract class AudioSource
 		}
 	}
 	
+	/**
+	 * Creates an audio source from a specification of the form type:argument, for
+	 * instance udp:2198, tcp:2198, fifo:/tmp/pav or ring:/tmp/pav.ring.
+	 * 
+	 * @param spec The specification. Must not be null
+	 * @param callback The callback to use. Must not be null
+	 * @return The audio source
+	 * @throws PAVException If the specification is invalid or the source could not be created
+	 */
+	public static AudioSource factory(String spec, AudioCallback callback) throws PAVException
+	{
+		int split = spec.indexOf(':');
+		
+		if(split < 1 || split == spec.length() - 1) {
+			throw new PAVException("Invalid audio source specification: " + spec);
+		}
+		
+		String type = spec.substring(0, split);
+		String arg = spec.substring(split + 1);
+		
+		try {
+			if(type.equals(Config.AUDIO_SOURCE_FIFO)) {
+				return new FIFOAudioSource(callback, arg);
+			}
+			else if(type.equals(Config.AUDIO_SOURCE_UDP)) {
+				return new UDPAudioSource(callback, Integer.parseInt(arg));
+			}
+			else if(type.equals(Config.AUDIO_SOURCE_TCP)) {
+				return new TCPAudioSource(callback, Integer.parseInt(arg));
+			}
+			else if(type.equals(Config.AUDIO_SOURCE_RING)) {
+				return new RingAudioSource(callback, arg);
+			}
+		}
+		catch(Exception e) {
+			throw new PAVException("Error while initializing audio source " + spec + ".", e);
+		}
+		
+		throw new PAVException("Invalid audio source specification: " + spec);
+	}
+	
 	/**
 	 * Starts reading (in a new thread).
 	 */
 	public abstract void read();
 	
+	/**
+	 * Returns a short status report, e.g. transmission statistics.
+	 * 
+	 * @return The status, or null if the audio source has nothing to report
+	 */
+	public String getStatus()
+	{
+		return null;
+	}
+	
 	/**
 	 * Stops reading.
 	 * 
@@ -64,19 +64,32 @@ public class AudioStream implements Runnable
 	public void run()
 	{		
 		try {
-			int ss = Config.sampleSize;
-			short[] sb = new short[ss];
-			byte[] bb = new byte[ss * 2];
-			float[] frame = new float[ss];
+			int ss = 0;
+			short[] sb = null;
+			byte[] bb = null;
+			ShortBuffer sbuf = null;
 			float normalize = (float) Short.MAX_VALUE;
-
-			ByteBuffer bbuf = ByteBuffer.wrap(bb);
-			bbuf.order(Config.byteOrder);		
-			ShortBuffer sbuf = bbuf.asShortBuffer();		
+			long duration = 0;
 
 			while(! Thread.interrupted()) {
+				if(ss != Config.sampleSize) {
+					// the sample size may be changed at runtime, the next frame is read with the new size
+					ss = Config.sampleSize;
+					sb = new short[ss];
+					bb = new byte[ss * 2];
+					duration = (long) (ss * 1e9 / Config.sampleRate);
+					
+					ByteBuffer bbuf = ByteBuffer.wrap(bb);
+					bbuf.order(Config.byteOrder);
+					sbuf = bbuf.asShortBuffer();
+				}
+				
 				_is.readFully(bb);
 				
+				// the first sample was captured about one frame before the last one arrived
+				long timestamp = System.nanoTime() - duration;
+				float[] frame = new float[ss];
+				
 				sbuf.clear();
 				sbuf.get(sb);
 				
@@ -84,7 +97,7 @@ public class AudioStream implements Runnable
 					frame[i] = sb[i] / normalize;
 				}
 					
-				_callback.onNewFrame(frame);
+				_callback.onNewFrame(frame, timestamp);
 			}
 		}
 		catch(IOException e) {
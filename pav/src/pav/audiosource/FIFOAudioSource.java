@@ -40,7 +40,19 @@ public class FIFOAudioSource extends AudioSource
 	 */
 	public FIFOAudioSource(AudioCallback callback) throws FileNotFoundException
 	{
-		_stream = new AudioStream(new FileInputStream(Config.fifoPath), callback);
+		this(callback, Config.fifoPath);
+	}
+	
+	/**
+	 * Ctor.
+	 * 
+	 * @param callback The callback. Must not be null
+	 * @param path The path to the fifo. Must not be null
+	 * @throws FileNotFoundException If the fifo does not exist
+	 */
+	public FIFOAudioSource(AudioCallback callback, String path) throws FileNotFoundException
+	{
+		_stream = new AudioStream(new FileInputStream(path), callback);
 	}
 	
 	@Override
@@ -0,0 +1,160 @@
+/*
+ * Processing Audio Visualization (PAV)
+ * Copyright (C) 2011  Christopher Pramerdorfer
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pav.audiosource;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import pav.lib.frame.FrameFeatures;
+
+/**
+ * Encodes and decodes the payload of feature packets.
+ * 
+ * Spectrum and mel spectrum are quantized to one byte per band, relative to their
+ * maximum. The layout of the payload (network byte order) is:
+ * 
+ * <pre>
+ * size  field
+ *    2  number of spectrum bands (n)
+ *    2  number of mel bands (m), 0 if not available
+ *    4  RMS (float)
+ *    4  spectral centroid (float)
+ *    1  beat flags
+ *    4  spectrum maximum (float)
+ *    4  mel spectrum maximum (float)
+ *    n  spectrum
+ *    m  mel spectrum
+ * </pre>
+ * 
+ * @author christopher
+ */
+public class FeaturePacket
+{
+	private static final int _fixedSize = 21;
+	
+	/**
+	 * Returns the payload size required to encode features.
+	 * 
+	 * @param numBands The number of spectrum bands
+	 * @param numMelBands The number of mel bands
+	 * @return The payload size in bytes
+	 */
+	public static int size(int numBands, int numMelBands)
+	{
+		return _fixedSize + numBands + numMelBands;
+	}
+	
+	/**
+	 * Encodes features.
+	 * 
+	 * @param features The features to encode. Must not be null
+	 * @param out Where to write the payload to, starting at the current position. Must have enough room
+	 */
+	public static void encode(FrameFeatures features, ByteBuffer out)
+	{
+		float[] spectrum = features.spectrum();
+		float[] mels = features.melSpectrum();
+		
+		int numMels = (mels == null) ? 0 : mels.length;
+		float spectrumMax = _max(spectrum);
+		float melMax = (mels == null) ? 0 : _max(mels);
+		
+		out.order(ByteOrder.BIG_ENDIAN);
+		out.putShort((short) spectrum.length);
+		out.putShort((short) numMels);
+		out.putFloat(features.rms());
+		out.putFloat(features.spectralCentroid());
+		out.put((byte) features.beats());
+		out.putFloat(spectrumMax);
+		out.putFloat(melMax);
+		
+		_quantize(spectrum, spectrumMax, out);
+		
+		if(mels != null) {
+			_quantize(mels, melMax, out);
+		}
+	}
+	
+	/**
+	 * Decodes features.
+	 * 
+	 * @param in The payload, starting at the current position. Must not be null
+	 * @param sampleSize The number of samples of the frame the features belong to
+	 * @return The features or null if the payload is invalid
+	 */
+	public static FrameFeatures decode(ByteBuffer in, int sampleSize)
+	{
+		if(in.remaining() < _fixedSize) {
+			return null;
+		}
+		
+		in.order(ByteOrder.BIG_ENDIAN);
+		
+		int numBands = in.getShort() & 0xFFFF;
+		int numMels = in.getShort() & 0xFFFF;
+		float rms = in.getFloat();
+		float centroid = in.getFloat();
+		int beats = in.get() & 0xFF;
+		float spectrumMax = in.getFloat();
+		float melMax = in.getFloat();
+		
+		if(numBands == 0 || in.remaining() != numBands + numMels) {
+			return null;
+		}
+		
+		float[] spectrum = _dequantize(in, numBands, spectrumMax);
+		float[] mels = (numMels == 0) ? null : _dequantize(in, numMels, melMax);
+		
+		return new FrameFeatures(sampleSize, spectrum, mels, rms, centroid, beats);
+	}
+	
+	private static float _max(float[] values)
+	{
+		float max = 0;
+		
+		for(int i = 0; i < values.length; i++) {
+			if(values[i] > max) max = values[i];
+		}
+		
+		return max;
+	}
+	
+	private static void _quantize(float[] values, float max, ByteBuffer out)
+	{
+		float scale = (max > 0) ? 255 / max : 0;
+		
+		for(int i = 0; i < values.length; i++) {
+			float v = values[i];
+			out.put((v <= 0) ? 0 : (byte) (v * scale + 0.5f));
+		}
+	}
+	
+	private static float[] _dequantize(ByteBuffer in, int len, float max)
+	{
+		float[] values = new float[len];
+		float scale = max / 255;
+		
+		for(int i = 0; i < len; i++) {
+			values[i] = (in.get() & 0xFF) * scale;
+		}
+		
+		return values;
+	}
+	
+	private FeaturePacket() { }
+}
@@ -0,0 +1,241 @@
+/*
+ * Processing Audio Visualization (PAV)
+ * Copyright (C) 2011  Christopher Pramerdorfer
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pav.audiosource;
+
+/**
+ * A bounded jitter buffer for sequenced frames.
+ *
+ * Frames are passed on to the callback in sequence order. If the next frame is missing,
+ * up to depth later frames are held back to give it a chance to arrive. After that the
+ * frame is considered lost. A single lost frame is concealed by crossfading between
+ * its neighbours, longer gaps are skipped. Duplicates and frames that arrive too late
+ * are dropped.
+ *
+ * This class is not thread safe, except for the statistics methods.
+ *
+ * @author christopher
+ */
+public class JitterBuffer
+{
+	private final AudioCallback _callback;
+	private final int _depth, _capacity;
+	private final float[][] _frames;
+	private final int[] _sequences;
+	private final long[] _timestamps;
+	
+	private int _next, _held, _lastSequence;
+	private boolean _started;
+	private float[] _last;
+	private long _lastTimestamp;
+	
+	private volatile int _received, _lost, _concealed, _late, _duplicates;
+	
+	/**
+	 * Ctor.
+	 *
+	 * @param depth The maximum number of frames to hold back while waiting for a missing frame. Must be > 0
+	 * @param callback Where to send ordered frames to. Must not be null
+	 */
+	public JitterBuffer(int depth, AudioCallback callback)
+	{
+		_callback = callback;
+		_depth = depth;
+		_capacity = Integer.highestOneBit(depth * 2 + 1) << 1;
+		_frames = new float[_capacity][];
+		_sequences = new int[_capacity];
+		_timestamps = new long[_capacity];
+	}
+	
+	/**
+	 * Adds a frame.
+	 *
+	 * @param sequence The sequence number of the frame
+	 * @param frame The frame. Must not be null. Must not be modified afterwards
+	 * @param timestamp The capture time of the frame, see AudioCallback
+	 */
+	public void add(int sequence, float[] frame, long timestamp)
+	{
+		_received++;
+		
+		if(! _started) {
+			_next = sequence;
+			_started = true;
+		}
+		
+		int distance = sequence - _next;
+		
+		if(distance < -_capacity || distance >= _capacity) {
+			// the sender was restarted or we were cut off for a long time
+			flush();
+			_next = sequence;
+			distance = 0;
+		}
+		
+		if(distance < 0) {
+			_late++;
+			return;
+		}
+		
+		int slot = _slot(sequence);
+		
+		if(_frames[slot] != null) {
+			_duplicates++;
+			return;
+		}
+		
+		_frames[slot] = frame;
+		_sequences[slot] = sequence;
+		_timestamps[slot] = timestamp;
+		_held++;
+		
+		_drain(_depth);
+	}
+	
+	/**
+	 * Passes all held frames on to the callback, treating missing frames as lost.
+	 * Should be called if no frames arrived for some time.
+	 */
+	public void flush()
+	{
+		_drain(0);
+	}
+	
+	/**
+	 * Returns the number of frames received.
+	 *
+	 * @return The number of frames
+	 */
+	public int received()
+	{
+		return _received;
+	}
+	
+	/**
+	 * Returns the number of frames that never arrived, including concealed ones.
+	 *
+	 * @return The number of frames
+	 */
+	public int lost()
+	{
+		return _lost;
+	}
+	
+	/**
+	 * Returns the number of lost frames that were concealed.
+	 *
+	 * @return The number of frames
+	 */
+	public int concealed()
+	{
+		return _concealed;
+	}
+	
+	/**
+	 * Returns the number of frames that arrived after they had been declared lost.
+	 *
+	 * @return The number of frames
+	 */
+	public int late()
+	{
+		return _late;
+	}
+	
+	/**
+	 * Returns the number of duplicate frames.
+	 *
+	 * @return The number of frames
+	 */
+	public int duplicates()
+	{
+		return _duplicates;
+	}
+	
+	@Override
+	public String toString()
+	{
+		return "Packets lost: " + _lost + " (" + _concealed + " concealed), late: " + _late + ", duplicates: " + _duplicates;
+	}
+	
+	private void _drain(int depth)
+	{
+		while(_held > 0) {
+			int slot = _slot(_next);
+			
+			if(_frames[slot] != null && _sequences[slot] == _next) {
+				_emit(slot);
+				_next++;
+				continue;
+			}
+			
+			if(_held <= depth) {
+				break;
+			}
+			
+			int following = _slot(_next + 1);
+			_lost++;
+			
+			if(_last != null && _lastSequence == _next - 1 && _frames[following] != null && _sequences[following] == _next + 1) {
+				_concealed++;
+				long timestamp = _lastTimestamp + (_timestamps[following] - _lastTimestamp) / 2;
+				_callback.onNewFrame(_conceal(_last, _frames[following]), timestamp);
+			}
+			
+			_next++;
+		}
+	}
+	
+	private void _emit(int slot)
+	{
+		float[] frame = _frames[slot];
+		
+		_frames[slot] = null;
+		_held--;
+		_last = frame;
+		_lastSequence = _next;
+		_lastTimestamp = _timestamps[slot];
+		
+		_callback.onNewFrame(frame, _lastTimestamp);
+	}
+	
+	private float[] _conceal(float[] previous, float[] following)
+	{
+		int len = following.length;
+		float[] frame = new float[len];
+		
+		if(previous.length != len) {
+			System.arraycopy(following, 0, frame, 0, len);
+			return frame;
+		}
+		
+		float step = 1f / len;
+		
+		for(int i = 0; i < len; i++) {
+			float t = i * step;
+			frame[i] = previous[i] * (1 - t) + following[i] * t;
+		}
+		
+		return frame;
+	}
+	
+	private int _slot(int sequence)
+	{
+		// capacity is a power of two, so this stays continuous when the sequence number wraps
+		return sequence & (_capacity - 1);
+	}
+}
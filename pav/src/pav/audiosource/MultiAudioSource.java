@@ -0,0 +1,103 @@
+/*
+ * Processing Audio Visualization (PAV)
+ * Copyright (C) 2011  Christopher Pramerdorfer
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pav.audiosource;
+
+import pav.lib.PAVException;
+
+/**
+ * Combines several audio sources, for instance to visualize multiple rooms at once.
+ * 
+ * Every input reads in its own thread and reports to its own callback, so the frames
+ * of the inputs can be told apart.
+ * 
+ * @author christopher
+ */
+public class MultiAudioSource extends AudioSource
+{
+	private final AudioSource[] _sources;
+	
+	/**
+	 * Ctor.
+	 * 
+	 * @param specs The specifications of the inputs, see AudioSource.factory(). Must not be null
+	 * @param callbacks The callbacks to use, one per input. Must not be null
+	 * @throws PAVException If an input could not be created
+	 */
+	public MultiAudioSource(String[] specs, AudioCallback[] callbacks) throws PAVException
+	{
+		_sources = new AudioSource[specs.length];
+		
+		try {
+			for(int i = 0; i < specs.length; i++) {
+				_sources[i] = factory(specs[i], callbacks[i]);
+			}
+		}
+		catch(PAVException e) {
+			try {
+				close();
+			}
+			catch(InterruptedException ie) { }
+			
+			throw e;
+		}
+	}
+	
+	/**
+	 * Returns the number of inputs.
+	 * 
+	 * @return The number of inputs
+	 */
+	public int numInputs()
+	{
+		return _sources.length;
+	}
+	
+	@Override
+	public void read()
+	{
+		for(AudioSource source : _sources) {
+			source.read();
+		}
+	}
+	
+	@Override
+	public String getStatus()
+	{
+		StringBuilder status = new StringBuilder();
+		
+		for(int i = 0; i < _sources.length; i++) {
+			String s = _sources[i].getStatus();
+			
+			if(s != null) {
+				if(status.length() > 0) status.append('\n');
+				status.append("Input " + i + ": " + s);
+			}
+		}
+		
+		return (status.length() == 0) ? null : status.toString();
+	}
+	
+	@Override
+	public void close() throws InterruptedException
+	{
+		for(AudioSource source : _sources) {
+			if(source != null) source.close();
+		}
+	}
+}
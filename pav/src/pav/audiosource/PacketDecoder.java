@@ -0,0 +1,264 @@
+/*
+ * Processing Audio Visualization (PAV)
+ * Copyright (C) 2011  Christopher Pramerdorfer
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pav.audiosource;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+import pav.Config;
+import pav.Console;
+import pav.lib.frame.FrameFeatures;
+
+/**
+ * Decodes PAV packets and passes the frames on to a callback. Used by the network audio sources.
+ * 
+ * Packets starting with a PacketHeader are passed through a JitterBuffer, so that
+ * reordered, duplicated and lost packets are handled. Packets without a header are
+ * expected to contain exactly one frame of 512, 1024 or 2048 samples. Feature packets
+ * bypass the jitter buffer, outdated ones are dropped.
+ * 
+ * Audio with a sample rate other than Config.sampleRate is converted by a Resampler after
+ * the jitter buffer, so that the analysis always runs at the same rate.
+ * 
+ * Frames are timestamped using the sample clock of the sender. Its offset to the local
+ * clock is taken from the packet that arrived fastest, so the timestamps do not jitter with
+ * the network. The offset slowly decays so that clock drift is followed. If packets arrive
+ * much later than the offset predicts, for instance because the sender paused or changed the
+ * song, the offset is taken from the current packet instead.
+ * 
+ * Finally, all frames pass a Reframer, so that they have the configured sample size
+ * regardless of the frame size of the sender.
+ * 
+ * @author christopher
+ */
+public class PacketDecoder
+{
+	private final AudioCallback _callback;
+	private final JitterBuffer _jitterBuffer;
+	private final RiceDecoder _riceDecoder;
+	private final PacketHeader _header;
+	
+	private static final long _clockDecay = 20000;
+	private static final long _clockGap = 100000000;
+	
+	private Resampler _resampler;
+	private long _clockOffset, _lastSampleClock;
+	private int _clockRate;
+	private int _featureSequence, _sampleRate;
+	private boolean _featuresReceived, _rateWarning;
+	
+	/**
+	 * Ctor.
+	 * 
+	 * @param callback Where to send decoded frames to. Must not be null
+	 * @param jitterBufferDepth The number of packets to hold back while waiting for a missing packet. Must be > 0
+	 */
+	public PacketDecoder(AudioCallback callback, int jitterBufferDepth)
+	{
+		_callback = new Reframer(callback);
+		_sampleRate = Config.sampleRate;
+		_jitterBuffer = new JitterBuffer(jitterBufferDepth, new AudioCallback()
+		{
+			@Override
+			public void onNewFrame(float[] frame, long timestamp)
+			{
+				_onFrame(frame, timestamp);
+			}
+			
+			@Override
+			public void onNewFeatures(FrameFeatures features, long timestamp)
+			{
+				_callback.onNewFeatures(features, timestamp);
+			}
+			
+			@Override
+			public void onError(Throwable error)
+			{
+				_callback.onError(error);
+			}
+		});
+		_riceDecoder = new RiceDecoder();
+		_header = new PacketHeader();
+	}
+	
+	/**
+	 * Decodes a packet.
+	 * 
+	 * @param packet The packet, from the current position to the limit. Must not be null
+	 */
+	public void decode(ByteBuffer packet)
+	{
+		long arrival = System.nanoTime();
+		int start = packet.position();
+		PacketHeader header = _header;
+		
+		if(! header.read(packet)) {
+			int numSamples = (packet.limit() - start) / 2;
+			
+			if(numSamples * 2 == packet.limit() - start && (numSamples == 512 || numSamples == 1024 || numSamples == 2048)) {
+				// unsequenced packet from an old sender
+				packet.position(start);
+				_callback.onNewFrame(_decode(packet, Config.byteOrder, numSamples, 1), arrival);
+			}
+			
+			return;
+		}
+		
+		long timestamp = _timestamp(header, arrival);
+		
+		if(header.format() == PacketHeader.FORMAT_FEATURES) {
+			_onFeatures(header, packet, timestamp);
+			return;
+		}
+		
+		if(header.sampleRate() != _sampleRate) {
+			// frames held back still have the old rate
+			_jitterBuffer.flush();
+			_sampleRate = header.sampleRate();
+			_resampler = null;
+			_rateWarning = false;
+		}
+		
+		float[] frame;
+		
+		if(header.format() == PacketHeader.FORMAT_PCM16_RICE) {
+			frame = new float[header.numSamples()];
+			
+			if(header.channels() != 1 || ! _riceDecoder.decode(packet, frame)) {
+				return;
+			}
+		}
+		else {
+			ByteOrder order = (header.format() == PacketHeader.FORMAT_PCM16_BE) ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
+			frame = _decode(packet, order, header.numSamples(), header.channels());
+		}
+		
+		_jitterBuffer.add(header.sequence(), frame, timestamp);
+	}
+	
+	/**
+	 * Passes all frames held back by the jitter buffer on. Should be called if no packets arrived for some time.
+	 */
+	public void flush()
+	{
+		_jitterBuffer.flush();
+	}
+	
+	/**
+	 * Returns the packet loss statistics of the jitter buffer.
+	 * 
+	 * @return The loss statistics
+	 */
+	@Override
+	public String toString()
+	{
+		return _jitterBuffer.toString();
+	}
+	
+	private long _timestamp(PacketHeader header, long arrival)
+	{
+		if(header.sampleRate() <= 0) {
+			return arrival;
+		}
+		
+		long clock = (long) (header.sampleClock() * 1e9 / header.sampleRate());
+		long offset = arrival - clock;
+		
+		if(header.sampleRate() != _clockRate || header.sampleClock() < _lastSampleClock || offset - _clockOffset > _clockGap) {
+			// first packet, the sender was restarted, or its clock stood still for more than 100 ms
+			_clockOffset = offset;
+			_clockRate = header.sampleRate();
+		}
+		else {
+			_clockOffset = Math.min(_clockOffset + _clockDecay, offset);
+		}
+		
+		_lastSampleClock = header.sampleClock();
+		
+		return _clockOffset + clock;
+	}
+	
+	private void _onFrame(float[] frame, long timestamp)
+	{
+		if(_sampleRate == Config.sampleRate || _sampleRate <= 0) {
+			_callback.onNewFrame(frame, timestamp);
+			return;
+		}
+		
+		if(_resampler == null || _resampler.frameSize() != frame.length) {
+			if(_rateWarning) {
+				_callback.onNewFrame(frame, timestamp);
+				return;
+			}
+			
+			try {
+				_resampler = new Resampler(_sampleRate, Config.sampleRate, frame.length, _callback);
+				Console.out("Resampling audio from " + _sampleRate + " Hz to " + Config.sampleRate + " Hz.");
+			}
+			catch(IllegalArgumentException e) {
+				if(! _rateWarning) {
+					Console.out(e.getMessage() + " Using audio with a sample rate of " + _sampleRate + " Hz as it is.");
+					_rateWarning = true;
+				}
+				
+				_callback.onNewFrame(frame, timestamp);
+				return;
+			}
+		}
+		
+		_resampler.process(frame, timestamp);
+	}
+	
+	private void _onFeatures(PacketHeader header, ByteBuffer payload, long timestamp)
+	{
+		// only the newest features are of interest, so there is no need to buffer them
+		if(_featuresReceived && header.sequence() - _featureSequence <= 0) {
+			return;
+		}
+		
+		FrameFeatures features = FeaturePacket.decode(payload, header.numSamples());
+		
+		if(features != null) {
+			_featureSequence = header.sequence();
+			_featuresReceived = true;
+			_callback.onNewFeatures(features, timestamp);
+		}
+	}
+	
+	private float[] _decode(ByteBuffer payload, ByteOrder order, int numSamples, int channels)
+	{
+		float[] frame = new float[numSamples];
+		float normalize = channels * (float) Short.MAX_VALUE;
+		
+		payload.order(order);
+		ShortBuffer samples = payload.asShortBuffer();
+		
+		for(int i = 0, j = 0; i < numSamples; i++) {
+			float sum = 0;
+			
+			for(int c = 0; c < channels; c++, j++) {
+				sum += samples.get(j);
+			}
+			
+			frame[i] = sum / normalize;
+		}
+		
+		return frame;
+	}
+}
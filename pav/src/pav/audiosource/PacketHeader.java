@@ -0,0 +1,234 @@
+/*
+ * Processing Audio Visualization (PAV)
+ * Copyright (C) 2011  Christopher Pramerdorfer
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pav.audiosource;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * The header of a PAV audio packet.
+ *
+ * Every packet starts with a fixed size header in network byte order, followed by
+ * the samples. The layout is:
+ *
+ * <pre>
+ * offset  size  field
+ *      0     2  magic ("PA")
+ *      2     1  version
+ *      3     1  format
+ *      4     4  sequence number
+ *      8     8  sample clock (index of the first sample)
+ *     16     4  sample rate
+ *     20     2  number of channels
+ *     22     2  number of samples per channel
+ * </pre>
+ *
+ * Samples of multiple channels are interleaved. Packets of format FORMAT_FEATURES
+ * contain precomputed features instead of samples, see FeaturePacket.
+ *
+ * @author christopher
+ */
+public class PacketHeader
+{
+	/**
+	 * The magic number every packet starts with.
+	 */
+	public static final int MAGIC = 0x5041;
+	
+	/**
+	 * The current protocol version.
+	 */
+	public static final int VERSION = 1;
+	
+	/**
+	 * The header size in bytes.
+	 */
+	public static final int SIZE = 24;
+	
+	/**
+	 * Samples are 16 bit signed integers in little-endian byte order.
+	 */
+	public static final int FORMAT_PCM16_LE = 1;
+	
+	/**
+	 * Samples are 16 bit signed integers in big-endian byte order.
+	 */
+	public static final int FORMAT_PCM16_BE = 2;
+	
+	/**
+	 * The packet contains features of a frame instead of samples, see FeaturePacket.
+	 */
+	public static final int FORMAT_FEATURES = 3;
+	
+	/**
+	 * Samples are 16 bit signed integers, losslessly compressed, see RiceDecoder. Mono only.
+	 */
+	public static final int FORMAT_PCM16_RICE = 4;
+	
+	private int _version, _format, _sequence, _sampleRate, _channels, _numSamples;
+	private long _sampleClock;
+	
+	/**
+	 * Reads the header from the start of a packet. The position of the buffer is set to the
+	 * start of the payload if the packet is valid.
+	 *
+	 * @param packet The packet. Must not be null
+	 * @return Whether the packet has a valid header and, for uncompressed sample packets, a payload of the expected size
+	 */
+	public boolean read(ByteBuffer packet)
+	{
+		if(packet.remaining() < SIZE) {
+			return false;
+		}
+		
+		packet.order(ByteOrder.BIG_ENDIAN);
+		int start = packet.position();
+		
+		if((packet.getShort(start) & 0xFFFF) != MAGIC) {
+			return false;
+		}
+		
+		_version = packet.get(start + 2) & 0xFF;
+		_format = packet.get(start + 3) & 0xFF;
+		_sequence = packet.getInt(start + 4);
+		_sampleClock = packet.getLong(start + 8);
+		_sampleRate = packet.getInt(start + 16);
+		_channels = packet.getShort(start + 20) & 0xFFFF;
+		_numSamples = packet.getShort(start + 22) & 0xFFFF;
+		
+		if(_version != VERSION || _channels == 0) {
+			return false;
+		}
+		
+		boolean uncompressed = (_format == FORMAT_PCM16_LE || _format == FORMAT_PCM16_BE);
+		
+		if(uncompressed && packet.remaining() - SIZE != payloadSize()) {
+			return false;
+		}
+		
+		packet.position(start + SIZE);
+		
+		return true;
+	}
+	
+	/**
+	 * Writes a header to the start of a buffer. The position of the buffer is set to the start of the payload.
+	 * 
+	 * @param buffer The buffer. Must have room for at least SIZE bytes
+	 * @param format The format, according to the constants of this class
+	 * @param sequence The sequence number of the packet
+	 * @param sampleClock The index of the first sample of the packet
+	 * @param sampleRate The sample rate
+	 * @param channels The number of channels
+	 * @param numSamples The number of samples per channel
+	 */
+	public static void write(ByteBuffer buffer, int format, int sequence, long sampleClock, int sampleRate, int channels, int numSamples)
+	{
+		buffer.clear();
+		buffer.order(ByteOrder.BIG_ENDIAN);
+		buffer.putShort((short) MAGIC);
+		buffer.put((byte) VERSION);
+		buffer.put((byte) format);
+		buffer.putInt(sequence);
+		buffer.putLong(sampleClock);
+		buffer.putInt(sampleRate);
+		buffer.putShort((short) channels);
+		buffer.putShort((short) numSamples);
+	}
+	
+	/**
+	 * Returns the protocol version.
+	 *
+	 * @return The version
+	 */
+	public int version()
+	{
+		return _version;
+	}
+	
+	/**
+	 * Returns the sample format.
+	 *
+	 * @return The format, according to the constants of this class
+	 */
+	public int format()
+	{
+		return _format;
+	}
+	
+	/**
+	 * Returns the sequence number. The sender increments it by one for every packet.
+	 *
+	 * @return The sequence number
+	 */
+	public int sequence()
+	{
+		return _sequence;
+	}
+	
+	/**
+	 * Returns the index of the first sample in the packet, counted from the start of the stream.
+	 *
+	 * @return The sample clock
+	 */
+	public long sampleClock()
+	{
+		return _sampleClock;
+	}
+	
+	/**
+	 * Returns the sample rate.
+	 *
+	 * @return The sample rate
+	 */
+	public int sampleRate()
+	{
+		return _sampleRate;
+	}
+	
+	/**
+	 * Returns the number of channels.
+	 *
+	 * @return The number of channels
+	 */
+	public int channels()
+	{
+		return _channels;
+	}
+	
+	/**
+	 * Returns the number of samples per channel.
+	 *
+	 * @return The number of samples
+	 */
+	public int numSamples()
+	{
+		return _numSamples;
+	}
+	
+	/**
+	 * Returns the payload size in bytes of uncompressed sample packets.
+	 *
+	 * @return The payload size
+	 */
+	public int payloadSize()
+	{
+		return _numSamples * _channels * 2;
+	}
+}
@@ -0,0 +1,101 @@
+/*
+ * Processing Audio Visualization (PAV)
+ * Copyright (C) 2011  Christopher Pramerdorfer
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pav.audiosource;
+
+import pav.Config;
+import pav.lib.frame.FrameFeatures;
+
+/**
+ * Regroups the samples of incoming frames into frames of Config.sampleSize samples.
+ * 
+ * The sample size is read for every frame, so it can be changed at runtime. Samples
+ * that do not fill a frame of the new size are discarded on a change. Frames that already
+ * have the right size are passed on as they are. Features are passed on unchanged.
+ * 
+ * This class is not thread safe.
+ * 
+ * @author christopher
+ */
+public class Reframer implements AudioCallback
+{
+	private final AudioCallback _callback;
+	
+	private float[] _pending;
+	private int _numPending;
+	private long _pendingTimestamp;
+	
+	/**
+	 * Ctor.
+	 * 
+	 * @param callback Where to send the frames to. Must not be null
+	 */
+	public Reframer(AudioCallback callback)
+	{
+		_callback = callback;
+	}
+	
+	@Override
+	public void onNewFrame(float[] frame, long timestamp)
+	{
+		int size = Config.sampleSize;
+		
+		if(_pending == null || _pending.length != size) {
+			_pending = new float[size];
+			_numPending = 0;
+		}
+		
+		if(_numPending == 0 && frame.length == size) {
+			_callback.onNewFrame(frame, timestamp);
+			return;
+		}
+		
+		double period = 1e9 / Config.sampleRate;
+		int len = frame.length;
+		int offset = 0;
+		
+		while(offset < len) {
+			if(_numPending == 0) {
+				_pendingTimestamp = timestamp + (long) (offset * period);
+			}
+			
+			int num = Math.min(size - _numPending, len - offset);
+			System.arraycopy(frame, offset, _pending, _numPending, num);
+			_numPending += num;
+			offset += num;
+			
+			if(_numPending == size) {
+				_callback.onNewFrame(_pending, _pendingTimestamp);
+				_pending = new float[size];
+				_numPending = 0;
+			}
+		}
+	}
+	
+	@Override
+	public void onNewFeatures(FrameFeatures features, long timestamp)
+	{
+		_callback.onNewFeatures(features, timestamp);
+	}
+	
+	@Override
+	public void onError(Throwable error)
+	{
+		_callback.onError(error);
+	}
+}
@@ -0,0 +1,206 @@
+/*
+ * Processing Audio Visualization (PAV)
+ * Copyright (C) 2011  Christopher Pramerdorfer
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pav.audiosource;
+
+import java.util.HashMap;
+
+/**
+ * A streaming polyphase sample rate converter.
+ * 
+ * The input is conceptually upsampled by L, lowpass filtered and downsampled by M, where
+ * L / M is the reduced ratio of the output to the input rate. Only the filter phases that
+ * are actually needed are evaluated. The filter tables depend on the rates only and are
+ * shared between all instances, while every instance keeps its own filter history, so one
+ * resampler is required per source.
+ * 
+ * Resampled frames are passed on to the callback with the same length as the input frames.
+ * 
+ * This class is not thread safe.
+ * 
+ * @author christopher
+ */
+public class Resampler
+{
+	/**
+	 * The largest supported upsampling factor (after reducing the ratio of the rates).
+	 */
+	public static final int MAX_PHASES = 1024;
+	
+	private static final int _tapsPerPhase = 16;
+	private static final HashMap<Long, float[][]> _tables = new HashMap<Long, float[][]>();
+	
+	private final AudioCallback _callback;
+	private final int _inputRate, _outputRate, _up, _down, _frameSize;
+	private final float[][] _phases;
+	private final float[] _buffer;
+	private final double _inputPeriod;
+	
+	private float[] _output;
+	private long _outputTimestamp;
+	private int _position, _phase, _numOutput;
+	
+	/**
+	 * Ctor.
+	 * 
+	 * @param inputRate The sample rate of the input. Must be > 0
+	 * @param outputRate The sample rate to convert to. Must be > 0
+	 * @param frameSize The length of the frames that will be passed to process(). Must be > 0
+	 * @param callback Where to send resampled frames to. Must not be null
+	 * @throws IllegalArgumentException If the ratio of the rates requires more than MAX_PHASES filter phases
+	 */
+	public Resampler(int inputRate, int outputRate, int frameSize, AudioCallback callback)
+	{
+		int gcd = _gcd(inputRate, outputRate);
+		
+		_up = outputRate / gcd;
+		_down = inputRate / gcd;
+		
+		if(_up > MAX_PHASES) {
+			throw new IllegalArgumentException("Unsupported conversion from " + inputRate + " Hz to " + outputRate + " Hz.");
+		}
+		
+		_callback = callback;
+		_inputRate = inputRate;
+		_outputRate = outputRate;
+		_frameSize = frameSize;
+		_phases = _table(_up, _down);
+		_buffer = new float[_tapsPerPhase - 1 + frameSize];
+		_output = new float[frameSize];
+		_inputPeriod = 1e9 / inputRate;
+	}
+	
+	/**
+	 * Resamples a frame. Every completed output frame is passed on to the callback.
+	 * 
+	 * @param frame The frame. Must have frameSize() samples
+	 * @param timestamp The capture time of the frame, see AudioCallback
+	 */
+	public void process(float[] frame, long timestamp)
+	{
+		float[] buffer = _buffer;
+		int history = _tapsPerPhase - 1;
+		int len = _frameSize;
+		
+		System.arraycopy(frame, 0, buffer, history, len);
+		
+		int position = _position;
+		int phase = _phase;
+		
+		while(position < len) {
+			float[] h = _phases[phase];
+			int i = position + history;
+			float y = 0;
+			
+			for(int k = 0; k < _tapsPerPhase; k++) {
+				y += h[k] * buffer[i - k];
+			}
+			
+			if(_numOutput == 0) {
+				_outputTimestamp = timestamp + (long) ((position + phase / (double) _up) * _inputPeriod);
+			}
+			
+			_output[_numOutput++] = y;
+			
+			if(_numOutput == _frameSize) {
+				_callback.onNewFrame(_output, _outputTimestamp);
+				_output = new float[_frameSize];
+				_numOutput = 0;
+			}
+			
+			phase += _down;
+			position += phase / _up;
+			phase %= _up;
+		}
+		
+		_position = position - len;
+		_phase = phase;
+		
+		System.arraycopy(buffer, len, buffer, 0, history);
+	}
+	
+	/**
+	 * Returns the sample rate of the input.
+	 * 
+	 * @return The sample rate
+	 */
+	public int inputRate()
+	{
+		return _inputRate;
+	}
+	
+	/**
+	 * Returns the sample rate of the output.
+	 * 
+	 * @return The sample rate
+	 */
+	public int outputRate()
+	{
+		return _outputRate;
+	}
+	
+	/**
+	 * Returns the length of the input and output frames.
+	 * 
+	 * @return The frame size
+	 */
+	public int frameSize()
+	{
+		return _frameSize;
+	}
+	
+	private static synchronized float[][] _table(int up, int down)
+	{
+		Long key = ((long) up << 32) | down;
+		float[][] phases = _tables.get(key);
+		
+		if(phases != null) {
+			return phases;
+		}
+		
+		// windowed sinc lowpass at the upsampled rate, cutting off below the lower nyquist frequency
+		int len = up * _tapsPerPhase;
+		double cutoff = 0.45 / Math.max(up, down);
+		double center = (len - 1) / 2.0;
+		
+		phases = new float[up][_tapsPerPhase];
+		
+		for(int n = 0; n < len; n++) {
+			double x = n - center;
+			double sinc = (x == 0) ? 2 * cutoff : Math.sin(2 * Math.PI * cutoff * x) / (Math.PI * x);
+			double w = 0.42 - 0.5 * Math.cos(2 * Math.PI * n / (len - 1)) + 0.08 * Math.cos(4 * Math.PI * n / (len - 1));
+			
+			phases[n % up][n / up] = (float) (sinc * w * up);
+		}
+		
+		_tables.put(key, phases);
+		
+		return phases;
+	}
+	
+	private static int _gcd(int a, int b)
+	{
+		while(b != 0) {
+			int t = a % b;
+			a = b;
+			b = t;
+		}
+		
+		return a;
+	}
+}
@@ -0,0 +1,132 @@
+/*
+ * Processing Audio Visualization (PAV)
+ * Copyright (C) 2011  Christopher Pramerdorfer
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pav.audiosource;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Decoder for losslessly compressed 16 bit PCM frames.
+ * 
+ * The encoded frame starts with two bytes: the order of the fixed polynomial predictor
+ * (0: no prediction, 1: previous sample, 2: linear extrapolation of the two previous
+ * samples, samples before the frame are 0) and the Rice parameter k. They are followed
+ * by the residuals, MSB first. Every residual r is mapped to u = 2r for r >= 0 and
+ * u = -2r - 1 otherwise. The quotient u >> k is written in unary (q ones and a zero),
+ * followed by the k low bits of u. Quotients of ESCAPE or more are written as ESCAPE ones,
+ * followed by u in ESCAPE_BITS bits.
+ * 
+ * @author christopher
+ */
+public class RiceDecoder
+{
+	/**
+	 * Quotients of this size or larger are escaped and followed by the raw value.
+	 */
+	public static final int ESCAPE = 24;
+	
+	/**
+	 * The number of bits of escaped values.
+	 */
+	public static final int ESCAPE_BITS = 18;
+	
+	private ByteBuffer _in;
+	private int _position, _limit, _bits;
+	private long _acc;
+	
+	/**
+	 * Decodes a frame.
+	 * 
+	 * @param in The encoded frame, from the current position to the limit. Must not be null
+	 * @param out Where to write the samples to, normalized to [-1, 1]. Must not be null
+	 * @return Whether the frame was decoded successfully
+	 */
+	public boolean decode(ByteBuffer in, float[] out)
+	{
+		int offset = in.position();
+		
+		if(in.remaining() < 2) {
+			return false;
+		}
+		
+		int order = in.get(offset);
+		int k = in.get(offset + 1);
+		
+		if(order < 0 || order > 2 || k < 0 || k > 15) {
+			return false;
+		}
+		
+		_in = in;
+		_position = offset + 2;
+		_limit = in.limit();
+		_acc = 0;
+		_bits = 0;
+		
+		int len = out.length;
+		float normalize = Short.MAX_VALUE;
+		
+		for(int i = 0, a = 0, b = 0; i < len; i++) {
+			int q = 0;
+			
+			while(q < ESCAPE && _read(1) == 1) {
+				q++;
+			}
+			
+			int u = (q < ESCAPE) ? (q << k) | _read(k) : _read(ESCAPE_BITS);
+			
+			if(u < 0) {
+				return false;
+			}
+			
+			int r = (u >>> 1) ^ -(u & 1);
+			int s;
+			
+			switch(order) {
+				case 0 : s = r; break;
+				case 1 : s = r + a; break;
+				default : s = r + 2 * a - b; break;
+			}
+			
+			b = a;
+			a = s;
+			
+			out[i] = s / normalize;
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Reads bits. Returns a negative value (and keeps doing so) once the input is exhausted.
+	 */
+	private int _read(int bits)
+	{
+		while(_bits < bits) {
+			if(_position >= _limit) {
+				return Integer.MIN_VALUE;
+			}
+			
+			_acc = (_acc << 8) | (_in.get(_position++) & 0xFF);
+			_bits += 8;
+		}
+		
+		_bits -= bits;
+		
+		return (int) (_acc >>> _bits) & ((1 << bits) - 1);
+	}
+}
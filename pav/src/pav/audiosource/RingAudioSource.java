@@ -0,0 +1,287 @@
+/*
+ * Processing Audio Visualization (PAV)
+ * Copyright (C) 2011  Christopher Pramerdorfer
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pav.audiosource;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.Adler32;
+import pav.Config;
+import pav.Console;
+
+/**
+ * Shared memory audio source for a producer on the same machine.
+ * 
+ * The producer writes packets into a ring of slots in a memory mapped file, any number
+ * of consumers can read them without system calls. The file layout (native byte order) is:
+ * 
+ * <pre>
+ * offset  size  field
+ *      0     4  magic ("PAVR")
+ *      4     4  version
+ *      8     4  number of slots
+ *     12     4  maximum packet size per slot
+ *     16     4  session id, changes whenever the producer restarts
+ *     24     8  sequence number of the newest packet, -1 if there is none
+ *     64        slots
+ * </pre>
+ * 
+ * Every slot consists of the sequence number of the packet it holds (8 bytes, -1 while
+ * being written), the packet length (4 bytes), an Adler-32 checksum of the packet (4 bytes)
+ * and the packet itself. The producer invalidates the slot, writes the packet, length
+ * and checksum, and then publishes the sequence number in the slot and the file header.
+ * Consumers copy the packet and accept it only if the slot sequence number was the same
+ * before and after copying and the checksum matches. The sequence check works only if the
+ * memory accesses are seen in order, which Java does not guarantee for buffers. It is the
+ * checksum that detects packets torn by a concurrent write, and it lowers the risk of
+ * accepting one rather than ruling it out.
+ * 
+ * @author christopher
+ */
+public class RingAudioSource extends AudioSource implements Runnable
+{
+	/**
+	 * The magic number of ring files.
+	 */
+	public static final int MAGIC = 0x50415652;
+	
+	/**
+	 * The current version of the file layout.
+	 */
+	public static final int VERSION = 1;
+	
+	/**
+	 * The size of the file header.
+	 */
+	public static final int HEADER_SIZE = 64;
+	
+	/**
+	 * The size of the slot header.
+	 */
+	public static final int SLOT_HEADER_SIZE = 16;
+	
+	private static final long _pollInterval = 200000;
+	private static final int _flushInterval = 500;
+	
+	private final AudioCallback _callback;
+	private final PacketDecoder _decoder;
+	private final Adler32 _checksum;
+	private final Thread _thread;
+	private final String _path;
+	private volatile boolean _closed;
+	
+	private MappedByteBuffer _ring;
+	private int _numSlots, _slotSize, _session;
+	private long _next;
+	
+	/**
+	 * Ctor.
+	 * 
+	 * @param callback The callback to use. Must not be null
+	 */
+	public RingAudioSource(AudioCallback callback)
+	{
+		this(callback, Config.ringPath);
+	}
+	
+	/**
+	 * Ctor.
+	 * 
+	 * @param callback The callback to use. Must not be null
+	 * @param path The path of the ring file. Must not be null
+	 */
+	public RingAudioSource(AudioCallback callback, String path)
+	{
+		_callback = callback;
+		_path = path;
+		_decoder = new PacketDecoder(callback, Config.jitterBufferDepth);
+		_checksum = new Adler32();
+		_thread = new Thread(this, "RingAudioSource");
+	}
+	
+	@Override
+	public void read()
+	{
+		_thread.start();
+	}
+	
+	@Override
+	public void run()
+	{
+		try {
+			_map();
+			
+			byte[] bb = new byte[_slotSize];
+			ByteBuffer packet = ByteBuffer.wrap(bb);
+			int idle = 0;
+			
+			while(! _closed) {
+				if(_ring.getInt(16) != _session) {
+					// the producer was restarted
+					_remap();
+					bb = new byte[_slotSize];
+					packet = ByteBuffer.wrap(bb);
+				}
+				
+				long newest = _ring.getLong(24);
+				
+				if(newest < _next) {
+					if(++idle == _flushInterval) {
+						_decoder.flush();
+					}
+					
+					LockSupport.parkNanos(_pollInterval);
+					continue;
+				}
+				
+				idle = 0;
+				
+				if(newest - _next >= _numSlots) {
+					// we were overrun, skip what has already been overwritten
+					_next = newest - _numSlots + 1;
+				}
+				
+				int length = _readSlot(_next, bb);
+				
+				if(length > 0) {
+					packet.clear();
+					packet.limit(length);
+					_decoder.decode(packet);
+				}
+				
+				_next++;
+			}
+		}
+		catch(IOException e) {
+			if(! _closed) _callback.onError(e);
+		}
+	}
+	
+	/**
+	 * Returns the packet loss statistics.
+	 * 
+	 * @return The loss statistics
+	 */
+	@Override
+	public String getStatus()
+	{
+		return _decoder.toString();
+	}
+	
+	@Override
+	public void close() throws InterruptedException
+	{
+		_closed = true;
+		_thread.interrupt();
+		_thread.join(250);
+	}
+	
+	/**
+	 * Copies the packet with the given sequence number. Returns its length or -1 if
+	 * the slot was overwritten or is being written.
+	 */
+	private int _readSlot(long sequence, byte[] out)
+	{
+		int base = HEADER_SIZE + (int) (sequence % _numSlots) * (SLOT_HEADER_SIZE + _slotSize);
+		
+		if(_ring.getLong(base) != sequence) {
+			return -1;
+		}
+		
+		int length = _ring.getInt(base + 8);
+		int checksum = _ring.getInt(base + 12);
+		
+		if(length <= 0 || length > _slotSize) {
+			return -1;
+		}
+		
+		for(int i = 0; i < length; i++) {
+			out[i] = _ring.get(base + SLOT_HEADER_SIZE + i);
+		}
+		
+		if(_ring.getLong(base) != sequence) {
+			return -1;
+		}
+		
+		_checksum.reset();
+		_checksum.update(out, 0, length);
+		
+		return ((int) _checksum.getValue() == checksum) ? length : -1;
+	}
+	
+	/**
+	 * Waits for the producer to create the ring file and maps it.
+	 */
+	private void _map() throws IOException
+	{
+		File file = new File(_path);
+		
+		Console.out("Waiting for " + file.getPath() + " ...");
+		
+		while(! _closed) {
+			if(file.length() > HEADER_SIZE) {
+				RandomAccessFile raf = new RandomAccessFile(file, "r");
+				
+				try {
+					FileChannel channel = raf.getChannel();
+					MappedByteBuffer ring = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+					ring.order(ByteOrder.nativeOrder());
+					
+					if(ring.getInt(0) == MAGIC && ring.getInt(4) == VERSION) {
+						int numSlots = ring.getInt(8);
+						int slotSize = ring.getInt(12);
+						
+						if(numSlots > 0 && slotSize > 0 && ring.capacity() >= HEADER_SIZE + (long) numSlots * (SLOT_HEADER_SIZE + slotSize)) {
+							_ring = ring;
+							_numSlots = numSlots;
+							_slotSize = slotSize;
+							_session = ring.getInt(16);
+							_next = ring.getLong(24) + 1;
+							
+							Console.out("Reading from " + file.getPath() + ".");
+							return;
+						}
+					}
+				}
+				finally {
+					// the mapping stays valid after the file is closed
+					raf.close();
+				}
+			}
+			
+			try {
+				Thread.sleep(100);
+			}
+			catch(InterruptedException e) {
+				return;
+			}
+		}
+	}
+	
+	private void _remap() throws IOException
+	{
+		_decoder.flush();
+		_map();
+	}
+}
@@ -0,0 +1,238 @@
+/*
+ * Processing Audio Visualization (PAV)
+ * Copyright (C) 2011  Christopher Pramerdorfer
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pav.audiosource;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import pav.Config;
+import pav.Console;
+
+/**
+ * TCP audio source.
+ * 
+ * Accepts a single producer at a time. The stream consists of packets as sent to the
+ * UDP audio source, each of them preceded by its length as 4 byte integer in network
+ * byte order. Data are read without blocking into a direct buffer and decoded in place
+ * with a PacketDecoder. Decoded frames are passed on right away, so there is no backpressure
+ * on the producer. If the renderer falls behind, frames are handled by the overload policy
+ * as with the other sources, see Config.overloadPolicy.
+ * 
+ * @author christopher
+ */
+public class TCPAudioSource extends AudioSource implements Runnable
+{
+	private static final int _maxPacketSize = 65536;
+	private static final int _selectTimeout = 100;
+	
+	private final AudioCallback _callback;
+	private final ServerSocketChannel _server;
+	private final Selector _selector;
+	private final PacketDecoder _decoder;
+	private final Thread _thread;
+	private SocketChannel _client;
+	private volatile boolean _closed;
+	
+	/**
+	 * Ctor.
+	 * 
+	 * @param callback The callback to use. Must not be null
+	 * @throws IOException If the socket could not be created
+	 */
+	public TCPAudioSource(AudioCallback callback) throws IOException
+	{
+		this(callback, Config.tcpPort);
+	}
+	
+	/**
+	 * Ctor.
+	 * 
+	 * @param callback The callback to use. Must not be null
+	 * @param port The port to listen to
+	 * @throws IOException If the socket could not be created
+	 */
+	public TCPAudioSource(AudioCallback callback, int port) throws IOException
+	{
+		_callback = callback;
+		_decoder = new PacketDecoder(callback, Config.jitterBufferDepth);
+		
+		_selector = Selector.open();
+		_server = ServerSocketChannel.open();
+		_server.socket().setReuseAddress(true);
+		_server.socket().bind(new InetSocketAddress(port));
+		_server.configureBlocking(false);
+		_server.register(_selector, SelectionKey.OP_ACCEPT);
+		
+		_thread = new Thread(this, "TCPAudioSource");
+	}
+	
+	@Override
+	public void read()
+	{
+		_thread.start();
+	}
+	
+	@Override
+	public void run()
+	{
+		ByteBuffer buffer = ByteBuffer.allocateDirect(_maxPacketSize + 4);
+		
+		try {
+			while(! Thread.interrupted()) {
+				if(_selector.select(_selectTimeout) == 0) {
+					_decoder.flush();
+					continue;
+				}
+				
+				Iterator<SelectionKey> keys = _selector.selectedKeys().iterator();
+				
+				while(keys.hasNext()) {
+					SelectionKey key = keys.next();
+					keys.remove();
+					
+					if(! key.isValid()) {
+						continue;
+					}
+					
+					if(key.isAcceptable()) {
+						_accept();
+						buffer.clear();
+					}
+					else if(key.isReadable()) {
+						if(_client.read(buffer) < 0 || ! _process(buffer)) {
+							_disconnect();
+							buffer.clear();
+						}
+					}
+				}
+			}
+		}
+		catch(IOException e) {
+			if(! _closed) _callback.onError(e);
+		}
+		finally {
+			_disconnect();
+			
+			try {
+				_selector.close();
+				_server.close();
+			}
+			catch(IOException e) { }
+		}
+	}
+	
+	/**
+	 * Returns the connection state and packet loss statistics.
+	 * 
+	 * @return The status
+	 */
+	@Override
+	public String getStatus()
+	{
+		return (_client == null) ? "Waiting for a producer." : _decoder.toString();
+	}
+	
+	@Override
+	public void close() throws InterruptedException
+	{
+		_closed = true;
+		_thread.interrupt();
+		_selector.wakeup();
+		_thread.join(250);
+	}
+	
+	private void _accept() throws IOException
+	{
+		SocketChannel client = _server.accept();
+		
+		if(client == null) {
+			return;
+		}
+		
+		_disconnect();
+		
+		client.configureBlocking(false);
+		client.socket().setTcpNoDelay(true);
+		client.register(_selector, SelectionKey.OP_READ);
+		
+		_client = client;
+		
+		Console.out("Producer connected from " + client.socket().getInetAddress().getHostAddress() + ".");
+	}
+	
+	private void _disconnect()
+	{
+		if(_client == null) {
+			return;
+		}
+		
+		try {
+			_client.close();
+		}
+		catch(IOException e) { }
+		
+		_client = null;
+		_decoder.flush();
+		
+		Console.out("Producer disconnected.");
+	}
+	
+	/**
+	 * Decodes all complete packets in the buffer and keeps the remainder.
+	 * Returns false if the stream is corrupt.
+	 */
+	private boolean _process(ByteBuffer buffer)
+	{
+		buffer.flip();
+		int limit = buffer.limit();
+		
+		while(buffer.remaining() >= 4) {
+			int start = buffer.position();
+			int length = buffer.order(ByteOrder.BIG_ENDIAN).getInt(start);
+			
+			if(length <= 0 || length > _maxPacketSize) {
+				Console.error("Received an invalid packet length, closing connection.");
+				return false;
+			}
+			
+			if(buffer.remaining() < length + 4) {
+				break;
+			}
+			
+			int end = start + 4 + length;
+			
+			buffer.position(start + 4);
+			buffer.limit(end);
+			_decoder.decode(buffer);
+			
+			buffer.limit(limit);
+			buffer.position(end);
+		}
+		
+		buffer.compact();
+		
+		return true;
+	}
+}
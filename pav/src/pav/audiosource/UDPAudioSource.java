@@ -20,35 +20,62 @@
 package pav.audiosource;
 
 import java.io.IOException;
-import java.io.PipedInputStream;
-import java.io.PipedOutputStream;
 import java.net.DatagramPacket;
 import java.net.DatagramSocket;
-import java.net.SocketException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.MulticastSocket;
+import java.net.NetworkInterface;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
 import pav.Config;
+import pav.Console;
 
 /**
- * UDP audio source.
+ * UDP audio source. Packets are decoded with a PacketDecoder.
+ * 
+ * If a multicast group is configured, the source joins it so that a single sender
+ * can feed any number of PAV instances.
  * 
  * @author christopher
  */
 public class UDPAudioSource extends AudioSource implements Runnable
 {
+	private static final int _maxPacketSize = 65536;
+	private static final int _flushTimeout = 100;
+	
 	private final AudioCallback _callback;
 	private final DatagramSocket _socket;
+	private final PacketDecoder _decoder;
 	private final Thread _thread;
+	private final int _port;
 	private boolean _closed;
 	
 	/**
 	 * Ctor.
 	 * 
 	 * @param callback The callback to use. Must not be null
-	 * @throws SocketException If the socket could not be created
+	 * @throws IOException If the socket could not be created or the multicast group could not be joined
+	 */
+	public UDPAudioSource(AudioCallback callback) throws IOException
+	{
+		this(callback, Config.udpPort);
+	}
+	
+	/**
+	 * Ctor.
+	 * 
+	 * @param callback The callback to use. Must not be null
+	 * @param port The port to listen to
+	 * @throws IOException If the socket could not be created or the multicast group could not be joined
 	 */
-	public UDPAudioSource(AudioCallback callback) throws SocketException
+	public UDPAudioSource(AudioCallback callback, int port) throws IOException
 	{
 		_callback = callback;
-		_socket = new DatagramSocket(Config.udpPort);
+		_port = port;
+		_socket = _createSocket();
+		_socket.setSoTimeout(_flushTimeout);
+		_decoder = new PacketDecoder(callback, Config.jitterBufferDepth);
 		_thread = new Thread(this, "UDPAudioSource");
 	}
 	
@@ -61,26 +88,26 @@ public class UDPAudioSource extends AudioSource implements Runnable
 	@Override
 	public void run()
 	{
-		int ss2 = Config.sampleSize * 2;
-		
-		byte[] bb = new byte[ss2];
+		byte[] bb = new byte[_maxPacketSize];
 		DatagramPacket packet = new DatagramPacket(bb, bb.length);
+		ByteBuffer buffer = ByteBuffer.wrap(bb);
 		
-		AudioStream stream = null;
-		PipedOutputStream os = null;
-		PipedInputStream is = null;
-				
 		try {
-			os = new PipedOutputStream();
-			is = new PipedInputStream(os);
-			
-			stream = new AudioStream(is, _callback);
-			stream.read();
-			
 			while(! Thread.interrupted()) {
-				_socket.receive(packet);				
-				os.write(bb);
-				packet.setLength(ss2);
+				packet.setLength(bb.length);
+				
+				try {
+					_socket.receive(packet);
+				}
+				catch(SocketTimeoutException e) {
+					_decoder.flush();
+					continue;
+				}
+				
+				buffer.clear();
+				buffer.limit(packet.getLength());
+				
+				_decoder.decode(buffer);
 			}
 		}
 		catch(IOException e) {
@@ -88,15 +115,19 @@ public class UDPAudioSource extends AudioSource implements Runnable
 		}
 		finally {
 			_socket.close();
-			
-			try {
-				if(stream != null) stream.close();
-				if(os != null) os.close();
-				if(is != null) is.close();
-			}
-			catch(Exception e) { }
 		}
 	}
+	
+	/**
+	 * Returns the packet loss statistics of the jitter buffer.
+	 * 
+	 * @return The loss statistics
+	 */
+	@Override
+	public String getStatus()
+	{
+		return _decoder.toString();
+	}
 
 	@Override
 	public void close() throws InterruptedException
@@ -106,4 +137,41 @@ public class UDPAudioSource extends AudioSource implements Runnable
 		_socket.close();
 		_thread.join(250);
 	}
+	
+	private DatagramSocket _createSocket() throws IOException
+	{
+		if(Config.multicastGroup == null) {
+			return new DatagramSocket(_port);
+		}
+		
+		InetAddress group = InetAddress.getByName(Config.multicastGroup);
+		
+		if(! group.isMulticastAddress()) {
+			throw new IOException(Config.multicastGroup + " is not a multicast group.");
+		}
+		
+		NetworkInterface ni = null;
+		
+		if(Config.multicastInterface != null) {
+			ni = NetworkInterface.getByName(Config.multicastInterface);
+			
+			if(ni == null) {
+				throw new IOException("Unknown network interface " + Config.multicastInterface + ".");
+			}
+		}
+		
+		MulticastSocket socket = new MulticastSocket(_port);
+		
+		try {
+			socket.joinGroup(new InetSocketAddress(group, _port), ni);
+		}
+		catch(IOException e) {
+			socket.close();
+			throw e;
+		}
+		
+		Console.out("Joined multicast group " + group.getHostAddress() + ".");
+		
+		return socket;
+	}
 }
@@ -59,6 +59,10 @@ public class Boxes extends ConfiguratorAbstract
 			return _processMaxHeight((pav.lib.visualizer.Boxes) subject, Util.removeFirst(q));
 		}
 		
+		if(q[0].equals("multires")) {
+			return _processMultiResolution((pav.lib.visualizer.Boxes) subject, Util.removeFirst(q));
+		}
+		
 		return false;
 	}
 	
@@ -101,4 +105,14 @@ public class Boxes extends ConfiguratorAbstract
 		subject.setMaxHeight(q[0]);
 		return true;
 	}
+	
+	private boolean _processMultiResolution(pav.lib.visualizer.Boxes subject, String[] query)
+	{
+		boolean[] multi = Util.parseBools(query);
+		
+		if(multi.length != 1) return false;
+		
+		subject.useMultiResolution(multi[0]);
+		return true;
+	}
 }
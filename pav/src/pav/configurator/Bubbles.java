@@ -58,6 +58,10 @@ public class Bubbles extends ConfiguratorAbstract
 			return _processRate((pav.lib.visualizer.Bubbles) subject, Util.removeFirst(q));
 		}
 		
+		if(q[0].equals("mode")) {
+			return _processMode((pav.lib.visualizer.Bubbles) subject, Util.removeFirst(q));
+		}
+		
 		return false;
 	}
 	
@@ -100,4 +104,19 @@ public class Bubbles extends ConfiguratorAbstract
 		subject.setSpawnRate(rate[0], rate[1]);
 		return true;
 	}
+	
+	private boolean _processMode(pav.lib.visualizer.Bubbles subject, String[] query)
+	{
+		if(query[0].equals("intensity")) {
+			subject.setMode(pav.lib.visualizer.Bubbles.MODE_INTENSITY);
+		}
+		else if(query[0].equals("loudness")) {
+			subject.setMode(pav.lib.visualizer.Bubbles.MODE_LOUDNESS);
+		}
+		else {
+			return false;
+		}
+		
+		return true;
+	}
 }
@@ -57,6 +57,9 @@ public class Rainbow extends ConfiguratorAbstract
 		else if(query[0].equals("intensity")) {
 			subject.setMode(pav.lib.visualizer.Rainbow.MODE_INTENSITY);
 		}
+		else if(query[0].equals("loudness")) {
+			subject.setMode(pav.lib.visualizer.Rainbow.MODE_LOUDNESS);
+		}
 		else {
 			return false;
 		}
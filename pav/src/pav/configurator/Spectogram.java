@@ -50,6 +50,14 @@ public class Spectogram extends ConfiguratorAbstract
 			return _processFreq((pav.lib.visualizer.Spectogram) subject, Util.removeFirst(q));
 		}
 		
+		if(q[0].equals("zoom")) {
+			return _processZoom((pav.lib.visualizer.Spectogram) subject, Util.removeFirst(q));
+		}
+		
+		if(q[0].equals("history")) {
+			return _processHistory((pav.lib.visualizer.Spectogram) subject, Util.removeFirst(q));
+		}
+		
 		return false;
 	}
 	
@@ -82,4 +90,28 @@ public class Spectogram extends ConfiguratorAbstract
 		
 		return false;
 	}
+	
+	private boolean _processZoom(pav.lib.visualizer.Spectogram subject, String[] query)
+	{
+		int[] zoom = Util.tryParseInts(query);
+		
+		if(zoom.length != 1 || zoom[0] < 0 || zoom[0] >= pav.lib.visualizer.Spectogram.NUM_ZOOM_LEVELS) {
+			return false;
+		}
+		
+		subject.setZoom(zoom[0]);
+		return true;
+	}
+	
+	private boolean _processHistory(pav.lib.visualizer.Spectogram subject, String[] query)
+	{
+		int[] size = Util.tryParseInts(query);
+		
+		if(size.length != 1 || size[0] < 1 || size[0] > 1024) {
+			return false;
+		}
+		
+		subject.setHistorySize(size[0] * 1024 * 1024);
+		return true;
+	}
 }
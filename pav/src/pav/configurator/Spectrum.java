@@ -54,6 +54,10 @@ public class Spectrum extends ConfiguratorAbstract
 			return _processStrokeWeight((pav.lib.visualizer.Spectrum) subject, Util.removeFirst(q));
 		}
 		
+		if(q[0].equals("multires")) {
+			return _processMultiResolution((pav.lib.visualizer.Spectrum) subject, Util.removeFirst(q));
+		}
+		
 		return false;
 	}
 	
@@ -99,6 +103,22 @@ public class Spectrum extends ConfiguratorAbstract
 		return false;
 	}
 	
+	private boolean _processMultiResolution(pav.lib.visualizer.Spectrum subject, String[] query)
+	{
+		int[] bands = Util.tryParseInts(query);
+		
+		if(bands.length != 1 || bands[0] < 0) return false;
+		
+		if(bands[0] == 0) {
+			subject.noMultiResolution();
+		}
+		else {
+			subject.useMultiResolution(bands[0]);
+		}
+		
+		return true;
+	}
+	
 	private boolean _processStrokeWeight(pav.lib.visualizer.Spectrum subject, String[] query)
 	{
 		try {